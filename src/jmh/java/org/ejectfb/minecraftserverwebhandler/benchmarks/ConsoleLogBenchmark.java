@@ -0,0 +1,73 @@
+package org.ejectfb.minecraftserverwebhandler.benchmarks;
+
+import org.ejectfb.minecraftserverwebhandler.config.ServerProperties;
+import org.ejectfb.minecraftserverwebhandler.dto.ConsoleLine;
+import org.ejectfb.minecraftserverwebhandler.services.ConsoleJournalService;
+import org.ejectfb.minecraftserverwebhandler.services.ConsoleLogService;
+import org.ejectfb.minecraftserverwebhandler.services.ConsoleSearchService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Кольцевой буфер истории: писатели из потока stdout и команд, читатели из REST-опроса.
+// Журнал и поиск не запущены, поэтому меряется только буфер и разбор заголовка.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class ConsoleLogBenchmark {
+    private static final int PAGE = 100;
+
+    @Param({"1000", "65536"})
+    public int historySize;
+
+    private ConsoleLogService logService;
+    private String[] lines;
+
+    @Setup
+    public void setup() {
+        ServerProperties serverProperties = new ServerProperties();
+        serverProperties.getConsole().setHistorySize(historySize);
+        ConsoleJournalService journal = new ConsoleJournalService(serverProperties);
+        logService = new ConsoleLogService(serverProperties, journal, new ConsoleSearchService(serverProperties, journal));
+        lines = LogCorpus.load("paper");
+        for (int i = 0; i < historySize; i++) {
+            logService.addLog(lines[i % lines.length]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    @Group("uncontended")
+    public ConsoleLine addLog(Cursor cursor) {
+        return logService.addLog(next(cursor));
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(2)
+    public ConsoleLine contendedAddLog(Cursor cursor) {
+        return logService.addLog(next(cursor));
+    }
+
+    // Клиент, догоняющий хвост: последние PAGE строк
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(2)
+    public List<ConsoleLine> contendedGetLogs() {
+        return logService.getLogs(logService.getLastSequence() - PAGE, PAGE);
+    }
+
+    private String next(Cursor cursor) {
+        String line = lines[cursor.next];
+        cursor.next = cursor.next + 1 == lines.length ? 0 : cursor.next + 1;
+        return line;
+    }
+}
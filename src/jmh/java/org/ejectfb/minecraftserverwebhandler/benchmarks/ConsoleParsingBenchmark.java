@@ -0,0 +1,80 @@
+package org.ejectfb.minecraftserverwebhandler.benchmarks;
+
+import org.ejectfb.minecraftserverwebhandler.config.ServerProperties;
+import org.ejectfb.minecraftserverwebhandler.dto.ConsoleLine;
+import org.ejectfb.minecraftserverwebhandler.services.ConsoleCommandCorrelator;
+import org.ejectfb.minecraftserverwebhandler.services.PlayerActivityService;
+import org.ejectfb.minecraftserverwebhandler.services.ServerDataService;
+import org.ejectfb.minecraftserverwebhandler.services.StatsBroadcastService;
+import org.ejectfb.minecraftserverwebhandler.services.TelegramBotService;
+import org.ejectfb.minecraftserverwebhandler.services.TimeSeriesService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+// Разбор строки целиком: заголовок, классификация, обработка события и публикация статистики.
+// Telegram не настроен, история игроков и временные ряды живут только в памяти.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ConsoleParsingBenchmark {
+    @Param({"paper", "forge"})
+    public String corpus;
+
+    private String[] lines;
+    private ConsoleLine[] parsed;
+    private ServerDataService dataService;
+    private StatsBroadcastService statsBroadcastService;
+    private int next;
+
+    @Setup
+    public void setup() {
+        lines = LogCorpus.load(corpus);
+        parsed = new ConsoleLine[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            parsed[i] = ConsoleLine.parse(i, System.currentTimeMillis(), lines[i]);
+        }
+
+        ServerProperties serverProperties = new ServerProperties();
+        statsBroadcastService = new StatsBroadcastService(
+                new SimpMessagingTemplate((message, timeout) -> true), serverProperties);
+        dataService = new ServerDataService();
+        ReflectionTestUtils.setField(dataService, "serverProperties", serverProperties);
+        ReflectionTestUtils.setField(dataService, "telegramBotService", new TelegramBotService("", ""));
+        ReflectionTestUtils.setField(dataService, "commandCorrelator", new ConsoleCommandCorrelator());
+        ReflectionTestUtils.setField(dataService, "timeSeriesService", new TimeSeriesService(serverProperties));
+        ReflectionTestUtils.setField(dataService, "statsBroadcastService", statsBroadcastService);
+        ReflectionTestUtils.setField(dataService, "playerActivityService", new PlayerActivityService(serverProperties));
+        dataService.init();
+    }
+
+    @TearDown
+    public void tearDown() {
+        statsBroadcastService.shutdown();
+    }
+
+    // Строка уже разобрана на заголовок - только ServerDataService
+    @Benchmark
+    public double parseConsoleLine() {
+        ConsoleLine line = parsed[next];
+        next = next + 1 == parsed.length ? 0 : next + 1;
+        dataService.parseConsoleLine(line);
+        return dataService.getOnlinePlayersValue();
+    }
+
+    // Как в handleServerOutput: разбор заголовка и ServerDataService
+    @Benchmark
+    public void parseHeaderAndLine(Blackhole blackhole) {
+        String text = lines[next];
+        next = next + 1 == lines.length ? 0 : next + 1;
+        ConsoleLine line = ConsoleLine.parse(next, System.currentTimeMillis(), text);
+        dataService.parseConsoleLine(line);
+        blackhole.consume(line);
+    }
+}
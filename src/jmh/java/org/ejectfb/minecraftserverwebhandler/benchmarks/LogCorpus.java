@@ -0,0 +1,28 @@
+package org.ejectfb.minecraftserverwebhandler.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+// Реальные логи Paper и Forge из src/jmh/resources/logs: старт, входы и выходы, чат, ошибки, list/tps/mem
+final class LogCorpus {
+    private LogCorpus() {
+    }
+
+    static String[] load(String name) {
+        String resource = "/logs/" + name + ".log";
+        try (InputStream in = LogCorpus.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalArgumentException("No log corpus " + resource);
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                return reader.lines().filter(line -> !line.isEmpty()).toArray(String[]::new);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.ejectfb.minecraftserverwebhandler.benchmarks;
+
+import org.ejectfb.minecraftserverwebhandler.utils.StringUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Форматирование для статистики и экранирование текста уведомлений Telegram
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StringUtilsBenchmark {
+    @State(Scope.Thread)
+    public static class Uptime {
+        // Секунды, минуты, часы и дни работы сервера
+        @Param({"42000", "3723000", "266523000"})
+        public long millis;
+    }
+
+    private String plainMessage;
+    private String statsMessage;
+
+    @Setup
+    public void setup() {
+        plainMessage = "➕ Игрок Steve присоеденился\n⏰ Время входа: 2024-10-25 14:03:42";
+        statsMessage = """
+                📊 Статистика сервера Minecraft (2024-10-25 14:05:31)
+                🌐 IP: 203.0.113.7
+                🔄 Состояние: работает
+                🧮 Память: 3125/6144 MB
+                👥 Онлайн: 2
+                ⏱ TPS: 19.97
+                ⏳ Время работы: 3ч 3м 11с
+                \t"quoted" C:\\server\\world""";
+    }
+
+    @Benchmark
+    public String formatDuration(Uptime uptime) {
+        return StringUtils.formatDuration(uptime.millis);
+    }
+
+    @Benchmark
+    public String escapeJsonNotification() {
+        return StringUtils.escapeJson(plainMessage);
+    }
+
+    @Benchmark
+    public String escapeJsonStats() {
+        return StringUtils.escapeJson(statsMessage);
+    }
+}
@@ -0,0 +1,123 @@
+package org.ejectfb.minecraftserverwebhandler.load;
+
+import org.ejectfb.minecraftserverwebhandler.metrics.LatencyHistogram;
+import org.ejectfb.minecraftserverwebhandler.services.ConsoleBroadcastService;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Вкладка консоли в браузере: подписка на /topic/console и учёт полученных строк.
+// Кадры не разбираются целиком - в сыром JSON ищутся только t=, "seq" и "skipped", чтобы клиенты
+// в одном процессе с обработчиком почти не отнимали у него процессор.
+final class ConsoleClient extends StompSessionHandlerAdapter {
+    private static final byte[] TIME_MARKER = FakeMinecraftServer.TIME_MARKER.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SEQ_FIELD = "\"seq\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SKIPPED_FIELD = "\"skipped\":".getBytes(StandardCharsets.UTF_8);
+
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong lines = new AtomicLong();
+    private final AtomicLong skippedLines = new AtomicLong();
+    private volatile LatencyHistogram latency = new LatencyHistogram();
+    private volatile Throwable error;
+
+    @Override
+    public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+        session.subscribe(ConsoleBroadcastService.CONSOLE_TOPIC, this);
+    }
+
+    @Override
+    public Type getPayloadType(StompHeaders headers) {
+        return byte[].class;
+    }
+
+    @Override
+    public void handleFrame(StompHeaders headers, Object payload) {
+        long receivedAt = FakeMinecraftServer.epochMicros();
+        byte[] frame = (byte[]) payload;
+        if (frame.length == 0 || frame[0] != '[') {
+            return;
+        }
+        frames.incrementAndGet();
+        LatencyHistogram histogram = latency;
+        int count = 0;
+        for (int i = 0; i < frame.length; i++) {
+            if (matches(frame, i, SEQ_FIELD)) {
+                count++;
+            } else if (matches(frame, i, SKIPPED_FIELD)) {
+                skippedLines.addAndGet(readLong(frame, i + SKIPPED_FIELD.length));
+            } else if (matches(frame, i, TIME_MARKER)) {
+                long sentAt = readLong(frame, i + TIME_MARKER.length);
+                if (sentAt > 0) {
+                    histogram.record((receivedAt - sentAt) * 1_000);
+                }
+            }
+        }
+        lines.addAndGet(count);
+    }
+
+    @Override
+    public void handleException(StompSession session, StompCommand command, StompHeaders headers, byte[] payload,
+                                Throwable exception) {
+        error = exception;
+    }
+
+    @Override
+    public void handleTransportError(StompSession session, Throwable exception) {
+        error = exception;
+    }
+
+    // Начало замера после прогрева
+    void reset() {
+        latency = new LatencyHistogram();
+        frames.set(0);
+        lines.set(0);
+        skippedLines.set(0);
+    }
+
+    long getFrames() {
+        return frames.get();
+    }
+
+    long getLines() {
+        return lines.get();
+    }
+
+    long getSkippedLines() {
+        return skippedLines.get();
+    }
+
+    LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    Throwable getError() {
+        return error;
+    }
+
+    private static boolean matches(byte[] data, int offset, byte[] token) {
+        if (data[offset] != token[0] || offset + token.length > data.length) {
+            return false;
+        }
+        for (int i = 1; i < token.length; i++) {
+            if (data[offset + i] != token[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long readLong(byte[] data, int offset) {
+        long value = 0;
+        int i = offset;
+        while (i < data.length && data[i] >= '0' && data[i] <= '9') {
+            value = value * 10 + (data[i] - '0');
+            i++;
+        }
+        return i == offset ? -1 : value;
+    }
+}
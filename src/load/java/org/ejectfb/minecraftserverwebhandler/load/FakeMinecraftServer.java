@@ -0,0 +1,192 @@
+package org.ejectfb.minecraftserverwebhandler.load;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Заменитель сервера Paper для нагрузочного теста: печатает лог с заданной скоростью и всплесками,
+// входы и выходы игроков, отвечает на list, tps, mem и stop.
+// Каждая строка нагрузки заканчивается на t=<микросекунды эпохи>, по ним клиенты считают сквозную задержку.
+public class FakeMinecraftServer {
+    static final String TIME_MARKER = " t=";
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private static final String[] PLAYERS = {"Steve", "Alex_99", "Notch", "jeb_", "Dinnerbone", "Grumm", "Herobrine", "Kiwi"};
+    private static final String[] MESSAGES = {
+            "INFO]: [LoadGen] Saved chunk region r.%d.%d.mca",
+            "INFO]: <%s> anyone near spawn? need iron",
+            "WARN]: Can't keep up! Is the server overloaded? Running %dms or %d ticks behind",
+            "INFO]: [Essentials] %s issued server command: /home base",
+            "INFO]: [LuckPerms] Performing sync for %s",
+            "WARN]: %s moved too quickly! -12.5,3.0,8.2",
+            "ERROR]: Could not pass event PlayerInteractEvent to SomePlugin v1.2.3 (%s)",
+    };
+
+    private final BufferedWriter out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+    private final boolean[] online = new boolean[PLAYERS.length];
+    private int onlineCount;
+    private long seq;
+    private volatile boolean running = true;
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        new FakeMinecraftServer().run(options);
+    }
+
+    private void run(Options options) throws InterruptedException {
+        Thread commands = Thread.ofPlatform().name("fake-stdin").daemon(true).start(this::readCommands);
+        emit("INFO]: Starting minecraft server version 1.21.1");
+        emit("INFO]: Done (1.042s)! For help, type \"help\"");
+        flush();
+
+        long started = System.nanoTime();
+        long nextBurst = started + TimeUnit.SECONDS.toNanos(options.burstEverySec);
+        long emitted = 0;
+        long burstLines = 0;
+        while (running) {
+            long now = System.nanoTime();
+            // Всплеск печатается сразу целиком, поверх равномерного потока
+            if (options.burstEverySec > 0 && now >= nextBurst) {
+                burstLines += options.burstLines;
+                nextBurst += TimeUnit.SECONDS.toNanos(options.burstEverySec);
+            }
+            long due = (long) ((now - started) / 1e9 * options.rate) + burstLines;
+            while (emitted < due && running) {
+                emitted++;
+                if (options.joinEvery > 0 && emitted % options.joinEvery == 0) {
+                    togglePlayer();
+                } else {
+                    emitLoadLine();
+                }
+            }
+            flush();
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        emit("INFO]: Stopping server");
+        emit("INFO]: Saving players");
+        flush();
+        commands.interrupt();
+    }
+
+    private void readCommands() {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+            String command;
+            while ((command = in.readLine()) != null) {
+                switch (command.trim()) {
+                    case "list" -> emit("INFO]: There are " + onlineCount() + " of a max of 20 players online: "
+                            + String.join(", ", onlinePlayers()));
+                    case "tps" -> emit("INFO]: §6TPS from last 1m, 5m, 15m: §a"
+                            + String.format(Locale.ROOT, "%.2f", 19 + ThreadLocalRandom.current().nextDouble())
+                            + ", §a19.99, §a20.0");
+                    case "mem" -> emit("INFO]: Current Memory Usage: "
+                            + (2048 + ThreadLocalRandom.current().nextInt(2048)) + "/6144 mb (Max: 8192 mb)");
+                    case "stop" -> running = false;
+                    default -> emit("INFO]: Unknown command. Type \"/help\" for help.");
+                }
+                flush();
+            }
+        } catch (IOException e) {
+            running = false;
+        }
+        running = false;
+    }
+
+    private void emitLoadLine() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String template = MESSAGES[random.nextInt(MESSAGES.length)];
+        String text = template.contains("%d")
+                ? String.format(template, random.nextInt(400), random.nextInt(40))
+                : String.format(template, PLAYERS[random.nextInt(PLAYERS.length)]);
+        emit(text + " seq=" + seq++ + TIME_MARKER + epochMicros());
+    }
+
+    private synchronized void togglePlayer() {
+        int player = ThreadLocalRandom.current().nextInt(PLAYERS.length);
+        String name = PLAYERS[player];
+        if (online[player]) {
+            emit("INFO]: " + name + " lost connection: Disconnected");
+            emit("INFO]: " + name + " left the game");
+            online[player] = false;
+            onlineCount--;
+        } else {
+            emit("INFO]: UUID of player " + name + " is 8667ba71-b85a-4004-af54-457a9734eed7");
+            emit("INFO]: " + name + " joined the game");
+            online[player] = true;
+            onlineCount++;
+        }
+    }
+
+    private synchronized int onlineCount() {
+        return onlineCount;
+    }
+
+    private synchronized String[] onlinePlayers() {
+        String[] names = new String[onlineCount];
+        int found = 0;
+        for (int i = 0; i < PLAYERS.length; i++) {
+            if (online[i]) {
+                names[found++] = PLAYERS[i];
+            }
+        }
+        return names;
+    }
+
+    private synchronized void emit(String message) {
+        try {
+            out.write('[');
+            out.write(LocalTime.now().format(TIME));
+            out.write(' ');
+            out.write(message);
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            // Обработчик закрыл поток - выходим
+            running = false;
+        }
+    }
+
+    static long epochMicros() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000 + now.getNano() / 1_000;
+    }
+
+    record Options(double rate, int burstEverySec, int burstLines, int joinEvery) {
+        static Options parse(String[] args) {
+            double rate = 1000;
+            int burstEverySec = 0;
+            int burstLines = 0;
+            int joinEvery = 500;
+            for (String arg : args) {
+                String[] pair = arg.replaceFirst("^--", "").split("=", 2);
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException("Expected --name=value: " + arg);
+                }
+                switch (pair[0]) {
+                    case "rate" -> rate = Double.parseDouble(pair[1]);
+                    case "burst-every" -> burstEverySec = Integer.parseInt(pair[1]);
+                    case "burst-lines" -> burstLines = Integer.parseInt(pair[1]);
+                    case "join-every" -> joinEvery = Integer.parseInt(pair[1]);
+                    default -> throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            }
+            return new Options(rate, burstEverySec, burstLines, joinEvery);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package org.ejectfb.minecraftserverwebhandler.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.WebSocketContainer;
+import org.ejectfb.minecraftserverwebhandler.Application;
+import org.ejectfb.minecraftserverwebhandler.handlers.ConsoleSessionMonitor;
+import org.ejectfb.minecraftserverwebhandler.metrics.ConsolePipelineMetrics;
+import org.ejectfb.minecraftserverwebhandler.metrics.LatencyHistogram;
+import org.ejectfb.minecraftserverwebhandler.services.ServerService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Нагрузочный тест: обработчик в этом процессе, FakeMinecraftServer - дочерний процесс, запущенный
+// через ServerService.startServer, и N STOMP-клиентов консоли. После прогрева считает пропускную
+// способность, сквозную задержку от stdout сервера до клиента, потери у медленных клиентов и память.
+// Отчёт печатается и сохраняется в load-result.json в рабочем каталоге.
+public class LoadTest {
+    private static final String USERNAME = "load";
+    private static final String PASSWORD = "load";
+    private static final int MAX_FRAME_BYTES = 4 * 1024 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        // Аргументами командной строки, чтобы перекрыть application.yml из classpath
+        ServletWebServerApplicationContext context = (ServletWebServerApplicationContext) new SpringApplicationBuilder(Application.class)
+                .run("--server.port=0",
+                        "--security.user.username=" + USERNAME,
+                        "--security.user.password=" + PASSWORD,
+                        "--server.auto-run=false",
+                        "--logging.level.org.springframework.web=WARN");
+        int exitCode;
+        try {
+            exitCode = new LoadTest().run(context, options);
+        } catch (Exception e) {
+            e.printStackTrace();
+            exitCode = 1;
+        } finally {
+            context.close();
+        }
+        // Планировщики ServerService не daemon-потоки
+        System.exit(exitCode);
+    }
+
+    private int run(ServletWebServerApplicationContext context, Options options) throws Exception {
+        int port = context.getWebServer().getPort();
+        ServerService serverService = context.getBean(ServerService.class);
+        ConsoleSessionMonitor sessionMonitor = context.getBean(ConsoleSessionMonitor.class);
+        ConsolePipelineMetrics pipelineMetrics = context.getBean(ConsolePipelineMetrics.class);
+
+        String cookie = login(port);
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        container.setDefaultMaxTextMessageBufferSize(MAX_FRAME_BYTES);
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient(container));
+        stompClient.setInboundMessageSizeLimit(MAX_FRAME_BYTES);
+        WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+        headers.add("Cookie", cookie);
+
+        List<ConsoleClient> clients = new ArrayList<>();
+        for (int i = 0; i < options.clients; i++) {
+            ConsoleClient client = new ConsoleClient();
+            stompClient.connectAsync("ws://localhost:" + port + "/ws/websocket", headers, client).get(10, TimeUnit.SECONDS);
+            clients.add(client);
+        }
+
+        serverService.startServer(fakeServerCommand(options));
+        ScheduledExecutorService commands = Executors.newSingleThreadScheduledExecutor();
+        // Как опрос статистики из интерфейса: ответы идут через классификатор и корреляцию команд
+        commands.scheduleAtFixedRate(() -> {
+            try {
+                serverService.sendCommand("list");
+                serverService.sendCommand("tps");
+            } catch (IOException | IllegalStateException e) {
+                System.err.println("Failed to send command: " + e.getMessage());
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+
+        System.out.printf("Warming up for %d s...%n", options.warmupSec);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(options.warmupSec));
+
+        clients.forEach(ConsoleClient::reset);
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP).toList();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+        long outputLines = serverService.getOutputLines();
+        long outputBytes = serverService.getOutputBytes();
+        long droppedFrames = sessionMonitor.getTotalDroppedFrames();
+        long droppedLines = sessionMonitor.getTotalDroppedLines();
+        long started = System.nanoTime();
+
+        System.out.printf("Measuring for %d s...%n", options.durationSec);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(options.durationSec));
+
+        double seconds = (System.nanoTime() - started) / 1e9;
+        long linesRead = serverService.getOutputLines() - outputLines;
+        long bytesRead = serverService.getOutputBytes() - outputBytes;
+        long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        gcCount = gcCount() - gcCount;
+        gcMillis = gcMillis() - gcMillis;
+        commands.shutdownNow();
+        serverService.stopServer();
+        System.gc();
+        long heapAfterGc = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+
+        LatencyHistogram merged = new LatencyHistogram();
+        List<Map<String, Object>> clientReports = new ArrayList<>();
+        for (ConsoleClient client : clients) {
+            LatencyHistogram.Snapshot snapshot = client.getLatency().snapshot();
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("linesPerSecond", client.getLines() / seconds);
+            report.put("framesPerSecond", client.getFrames() / seconds);
+            report.put("skippedLines", client.getSkippedLines());
+            report.put("latencyMs", latency(snapshot));
+            report.put("error", client.getError() == null ? null : client.getError().toString());
+            clientReports.add(report);
+            merge(merged, snapshot);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("options", options);
+        result.put("seconds", seconds);
+        result.put("handlerLinesPerSecond", linesRead / seconds);
+        result.put("handlerBytesPerSecond", bytesRead / seconds);
+        result.put("droppedFrames", sessionMonitor.getTotalDroppedFrames() - droppedFrames);
+        result.put("droppedLines", sessionMonitor.getTotalDroppedLines() - droppedLines);
+        result.put("endToEndLatencyMs", latency(merged.snapshot()));
+        Map<String, Object> stages = new LinkedHashMap<>();
+        pipelineMetrics.snapshot().forEach((stage, snapshot) -> stages.put(stage, latency(snapshot)));
+        result.put("handlerStagesMs", stages);
+        Map<String, Object> memory = new LinkedHashMap<>();
+        memory.put("peakHeapMb", peakHeap / 1048576.0);
+        memory.put("heapAfterGcMb", heapAfterGc / 1048576.0);
+        memory.put("gcCount", gcCount);
+        memory.put("gcMillis", gcMillis);
+        result.put("memory", memory);
+        result.put("clients", clientReports);
+
+        print(result, merged.snapshot(), clients.size());
+        Path file = Paths.get("load-result.json").toAbsolutePath();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), result);
+        System.out.println("Result saved to " + file);
+        serverService.getServerStopFuture().get(30, TimeUnit.SECONDS);
+        return clients.stream().anyMatch(client -> client.getError() != null) ? 1 : 0;
+    }
+
+    private String fakeServerCommand(Options options) {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        return "'" + java + "' -Xmx128m -cp '" + System.getProperty("java.class.path") + "' "
+                + FakeMinecraftServer.class.getName()
+                + " --rate=" + options.rate
+                + " --burst-every=" + options.burstEverySec
+                + " --burst-lines=" + options.burstLines
+                + " --join-every=" + options.joinEvery;
+    }
+
+    // Вход через форму, как в браузере; сессия передаётся в рукопожатие WebSocket
+    private static String login(int port) throws IOException, InterruptedException {
+        HttpClient http = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).build();
+        String form = "username=" + URLEncoder.encode(USERNAME, StandardCharsets.UTF_8)
+                + "&password=" + URLEncoder.encode(PASSWORD, StandardCharsets.UTF_8);
+        HttpResponse<Void> response = http.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/login"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build(), HttpResponse.BodyHandlers.discarding());
+        String location = response.headers().firstValue("Location").orElse("");
+        if (response.statusCode() != 302 || location.contains("error")) {
+            throw new IllegalStateException("Login failed: HTTP " + response.statusCode() + " " + location);
+        }
+        return response.headers().allValues("Set-Cookie").stream()
+                .filter(value -> value.startsWith("JSESSIONID="))
+                .map(value -> value.split(";", 2)[0])
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Login failed: HTTP " + response.statusCode()));
+    }
+
+    private static void print(Map<String, Object> result, LatencyHistogram.Snapshot endToEnd, int clients) {
+        System.out.println();
+        System.out.println("Options: " + result.get("options"));
+        System.out.printf(Locale.ROOT, "Handler: %.0f lines/s, %.1f KB/s%n",
+                (double) result.get("handlerLinesPerSecond"), (double) result.get("handlerBytesPerSecond") / 1024);
+        System.out.printf(Locale.ROOT, "Clients (%d): dropped %d frames, %d lines%n",
+                clients, (long) result.get("droppedFrames"), (long) result.get("droppedLines"));
+        System.out.printf(Locale.ROOT, "End-to-end stdout -> client: %s%n", format(endToEnd));
+        System.out.println("Handler stages (since startup, including warm-up):");
+        @SuppressWarnings("unchecked")
+        Map<String, Map<String, Object>> stages = (Map<String, Map<String, Object>>) result.get("handlerStagesMs");
+        stages.forEach((stage, values) -> System.out.printf(Locale.ROOT, "  %-11s p50 %8.3f ms, p99 %8.3f ms, max %8.3f ms%n",
+                stage, values.get("p50"), values.get("p99"), values.get("max")));
+        System.out.println("Memory: " + result.get("memory"));
+    }
+
+    private static String format(LatencyHistogram.Snapshot snapshot) {
+        return String.format(Locale.ROOT, "%d lines, p50 %.3f ms, p99 %.3f ms, max %.3f ms",
+                snapshot.count(), snapshot.quantileNanos(0.5) / 1e6, snapshot.quantileNanos(0.99) / 1e6,
+                snapshot.maxNanos() / 1e6);
+    }
+
+    private static Map<String, Object> latency(LatencyHistogram.Snapshot snapshot) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("count", snapshot.count());
+        values.put("mean", snapshot.meanNanos() / 1e6);
+        values.put("p50", snapshot.quantileNanos(0.5) / 1e6);
+        values.put("p99", snapshot.quantileNanos(0.99) / 1e6);
+        values.put("max", snapshot.maxNanos() / 1e6);
+        return values;
+    }
+
+    // Перезапись наблюдений по корзинам: квантили общей гистограммы совпадают с точностью до корзины
+    private static void merge(LatencyHistogram target, LatencyHistogram.Snapshot snapshot) {
+        long[] counts = snapshot.counts();
+        for (int i = 0; i < counts.length; i++) {
+            long value = Math.min(LatencyHistogram.upperBoundNanos(i), snapshot.maxNanos());
+            for (long n = 0; n < counts[i]; n++) {
+                target.record(value);
+            }
+        }
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    record Options(double rate, int burstEverySec, int burstLines, int joinEvery, int clients, int warmupSec,
+                   int durationSec) {
+        static Options parse(String[] args) {
+            double rate = 2000;
+            int burstEverySec = 10;
+            int burstLines = 5000;
+            int joinEvery = 500;
+            int clients = 5;
+            int warmupSec = 5;
+            int durationSec = 30;
+            for (String arg : args) {
+                String[] pair = arg.replaceFirst("^--", "").split("=", 2);
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException("Expected --name=value: " + arg);
+                }
+                switch (pair[0]) {
+                    case "rate" -> rate = Double.parseDouble(pair[1]);
+                    case "burst-every" -> burstEverySec = Integer.parseInt(pair[1]);
+                    case "burst-lines" -> burstLines = Integer.parseInt(pair[1]);
+                    case "join-every" -> joinEvery = Integer.parseInt(pair[1]);
+                    case "clients" -> clients = Integer.parseInt(pair[1]);
+                    case "warmup" -> warmupSec = Integer.parseInt(pair[1]);
+                    case "duration" -> durationSec = Integer.parseInt(pair[1]);
+                    default -> throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            }
+            return new Options(rate, burstEverySec, burstLines, joinEvery, clients, warmupSec, durationSec);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package org.ejectfb.minecraftserverwebhandler.backup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Ошибка чтения одного файла не прерывает бэкап: файл пропускается, а ошибка уходит в консоль
+@FunctionalInterface
+public interface BackupErrorListener {
+    void onError(Path file, IOException e);
+}
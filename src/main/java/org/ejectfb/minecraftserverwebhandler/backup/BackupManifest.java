@@ -0,0 +1,114 @@
+package org.ejectfb.minecraftserverwebhandler.backup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Описание инкрементального бэкапа: для каждого файла - размер, время изменения и список кусков в ChunkStore.
+// Сам манифест занимает десятки килобайт даже для большого мира.
+public record BackupManifest(long createdAt, List<FileEntry> files) {
+    public static final String EXTENSION = ".manifest";
+
+    private static final int MAGIC = 0x4D43424D; // "MCBM"
+    private static final int VERSION = 2;
+    private static final int HASH_BYTES = 32;
+    private static final HexFormat HEX = HexFormat.of();
+
+    // У region-файла chunks - заголовок и затем данные чанков в порядке region.slots
+    public record FileEntry(String path, long size, long modified, List<String> chunks, RegionLayout region) {
+        public FileEntry(String path, long size, long modified, List<String> chunks) {
+            this(path, size, modified, chunks, null);
+        }
+    }
+
+    // Номера занятых ячеек region-файла и время записи каждого чанка на момент бэкапа
+    public record RegionLayout(int[] slots, int[] timestamps) {
+    }
+
+    public static BackupManifest read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            int version = in.readInt() == MAGIC ? in.readInt() : -1;
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported backup manifest: " + file);
+            }
+            long createdAt = in.readLong();
+            int count = in.readInt();
+            List<FileEntry> files = new ArrayList<>(count);
+            byte[] hash = new byte[HASH_BYTES];
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long modified = in.readLong();
+                int chunkCount = in.readInt();
+                List<String> chunks = new ArrayList<>(chunkCount);
+                for (int j = 0; j < chunkCount; j++) {
+                    in.readFully(hash);
+                    chunks.add(HEX.formatHex(hash));
+                }
+                RegionLayout region = null;
+                if (version >= 2 && in.readBoolean()) {
+                    int slotCount = in.readInt();
+                    int[] slots = new int[slotCount];
+                    int[] timestamps = new int[slotCount];
+                    for (int j = 0; j < slotCount; j++) {
+                        slots[j] = in.readUnsignedShort();
+                        timestamps[j] = in.readInt();
+                    }
+                    region = new RegionLayout(slots, timestamps);
+                }
+                files.add(new FileEntry(path, size, modified, chunks, region));
+            }
+            return new BackupManifest(createdAt, files);
+        }
+    }
+
+    // Пишется во временный файл и переименовывается: манифест либо полный, либо его нет
+    public void write(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".part");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(createdAt);
+                out.writeInt(files.size());
+                for (FileEntry entry : files) {
+                    out.writeUTF(entry.path());
+                    out.writeLong(entry.size());
+                    out.writeLong(entry.modified());
+                    out.writeInt(entry.chunks().size());
+                    for (String chunk : entry.chunks()) {
+                        out.write(HEX.parseHex(chunk));
+                    }
+                    RegionLayout region = entry.region();
+                    out.writeBoolean(region != null);
+                    if (region != null) {
+                        out.writeInt(region.slots().length);
+                        for (int j = 0; j < region.slots().length; j++) {
+                            out.writeShort(region.slots()[j]);
+                            out.writeInt(region.timestamps()[j]);
+                        }
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public long totalSize() {
+        return files.stream().mapToLong(FileEntry::size).sum();
+    }
+}
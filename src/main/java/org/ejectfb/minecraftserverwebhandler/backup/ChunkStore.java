@@ -0,0 +1,106 @@
+package org.ejectfb.minecraftserverwebhandler.backup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+// Хранилище кусков, адресуемых по SHA-256 содержимого: objects/ab/cdef... хранит сжатый кусок.
+// Один и тот же кусок хранится один раз, сколько бы бэкапов на него ни ссылалось.
+public final class ChunkStore {
+    public record Collected(int chunks, long bytes) {
+    }
+
+    private final Path objects;
+
+    public ChunkStore(Path directory) {
+        this.objects = directory.resolve("objects");
+    }
+
+    public boolean contains(String hash) {
+        return Files.exists(path(hash));
+    }
+
+    // Возвращает число записанных байт; 0 - кусок уже был в хранилище
+    public long put(String hash, byte[] data, int length) throws IOException {
+        Path target = path(hash);
+        if (Files.exists(target)) {
+            return 0;
+        }
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), hash, ".tmp");
+        try {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try (OutputStream out = new DeflaterOutputStream(Files.newOutputStream(temp), deflater)) {
+                out.write(data, 0, length);
+            } finally {
+                deflater.end();
+            }
+            long size = Files.size(temp);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target);
+            } catch (FileAlreadyExistsException e) {
+                // Тот же кусок одновременно записал другой поток
+                return 0;
+            }
+            return size;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public void copyTo(String hash, OutputStream out) throws IOException {
+        try (InputStream in = new InflaterInputStream(Files.newInputStream(path(hash)))) {
+            in.transferTo(out);
+        } catch (NoSuchFileException e) {
+            throw new IOException("Backup chunk is missing from store: " + hash, e);
+        }
+    }
+
+    public byte[] read(String hash) throws IOException {
+        try (InputStream in = new InflaterInputStream(Files.newInputStream(path(hash)))) {
+            return in.readAllBytes();
+        } catch (NoSuchFileException e) {
+            throw new IOException("Backup chunk is missing from store: " + hash, e);
+        }
+    }
+
+    // Удаляет куски, на которые не ссылается ни один оставшийся манифест
+    public Collected collect(Set<String> live) throws IOException {
+        if (!Files.isDirectory(objects)) {
+            return new Collected(0, 0);
+        }
+        int chunks = 0;
+        long bytes = 0;
+        try (Stream<Path> files = Files.walk(objects, 2)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                String name = file.getFileName().toString();
+                if (!name.endsWith(".tmp") && live.contains(file.getParent().getFileName() + name)) {
+                    continue;
+                }
+                long size = Files.size(file);
+                if (Files.deleteIfExists(file)) {
+                    chunks++;
+                    bytes += size;
+                }
+            }
+        }
+        return new Collected(chunks, bytes);
+    }
+
+    private Path path(String hash) {
+        return objects.resolve(hash.substring(0, 2)).resolve(hash.substring(2));
+    }
+}
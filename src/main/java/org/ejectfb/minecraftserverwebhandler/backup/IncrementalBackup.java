@@ -0,0 +1,271 @@
+package org.ejectfb.minecraftserverwebhandler.backup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Инкрементальный бэкап: файлы режутся на куски фиксированного размера и складываются в ChunkStore.
+// Файл с тем же размером и временем изменения, что и в прошлом манифесте, не читается вовсе.
+// Фиксированные куски подходят миру лучше content-defined: region-файлы меняются на месте, без сдвига данных.
+// Region-файл (.mca) раскладывается на заголовок и отдельные чанки Minecraft: чанк, время записи которого
+// не изменилось с прошлого бэкапа, берётся из прошлого манифеста без чтения с диска.
+public final class IncrementalBackup {
+    public static final int CHUNK_SIZE = 1 << 20;
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    public record Result(BackupManifest manifest, int reusedFiles, long reusedRegionChunks, long uncompressedBytes,
+                         long readBytes, long storedBytes) {
+    }
+
+    private final ChunkStore store;
+    private final int threads;
+    private final BackupErrorListener errorListener;
+
+    public IncrementalBackup(ChunkStore store, int threads, BackupErrorListener errorListener) {
+        this.store = store;
+        this.threads = Math.max(1, threads);
+        this.errorListener = errorListener;
+    }
+
+    public Result create(Path root, List<Path> files, BackupManifest previous) throws IOException {
+        return create(root, files, List.of(), previous);
+    }
+
+    // unchanged - записи, уже сверенные вызывающим по размеру и времени изменения: файлов под root для них нет
+    public Result create(Path root, List<Path> files, List<BackupManifest.FileEntry> unchanged, BackupManifest previous)
+            throws IOException {
+        Map<String, BackupManifest.FileEntry> known = new HashMap<>();
+        if (previous != null) {
+            for (BackupManifest.FileEntry entry : previous.files()) {
+                known.put(entry.path(), entry);
+            }
+        }
+
+        AtomicInteger reusedFiles = new AtomicInteger(unchanged.size());
+        LongAdder reusedRegionChunks = new LongAdder();
+        LongAdder readBytes = new LongAdder();
+        LongAdder storedBytes = new LongAdder();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ForkJoinTask<BackupManifest.FileEntry>> tasks = new ArrayList<>(files.size());
+            for (Path file : files) {
+                tasks.add(pool.submit(() -> {
+                    String name = root.relativize(file).toString().replace('\\', '/');
+                    try {
+                        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                        long modified = attributes.lastModifiedTime().toMillis();
+                        BackupManifest.FileEntry old = known.get(name);
+                        if (old != null && old.size() == attributes.size() && old.modified() == modified) {
+                            reusedFiles.incrementAndGet();
+                            return old;
+                        }
+                        if (name.endsWith(RegionFile.EXTENSION)) {
+                            BackupManifest.FileEntry entry = storeRegion(name, file, modified, old, reusedRegionChunks,
+                                    readBytes, storedBytes);
+                            if (entry != null) {
+                                return entry;
+                            }
+                        }
+                        return store(name, file, modified, readBytes, storedBytes);
+                    } catch (IOException e) {
+                        errorListener.onError(file, e);
+                        return null;
+                    }
+                }));
+            }
+
+            List<BackupManifest.FileEntry> entries = new ArrayList<>(unchanged.size() + files.size());
+            long uncompressedBytes = 0;
+            for (BackupManifest.FileEntry entry : unchanged) {
+                entries.add(entry);
+                uncompressedBytes += entry.size();
+            }
+            for (ForkJoinTask<BackupManifest.FileEntry> task : tasks) {
+                BackupManifest.FileEntry entry = task.get();
+                if (entry != null) {
+                    entries.add(entry);
+                    uncompressedBytes += entry.size();
+                }
+            }
+            return new Result(new BackupManifest(System.currentTimeMillis(), entries), reusedFiles.get(),
+                    reusedRegionChunks.sum(), uncompressedBytes, readBytes.sum(), storedBytes.sum());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while creating backup", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Backup failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Время изменения выставляется как в манифесте, чтобы следующий бэкап после восстановления не перечитывал файлы
+    public void restore(BackupManifest manifest, Path target) throws IOException {
+        for (BackupManifest.FileEntry entry : manifest.files()) {
+            Path file = target.resolve(entry.path()).normalize();
+            if (!file.startsWith(target)) {
+                throw new IOException("Backup entry is outside of target directory: " + entry.path());
+            }
+            restoreFile(entry, file);
+        }
+    }
+
+    public void restoreFile(BackupManifest.FileEntry entry, Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        if (entry.region() != null) {
+            restoreRegion(entry, file);
+        } else {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                for (String chunk : entry.chunks()) {
+                    store.copyTo(chunk, out);
+                }
+            }
+        }
+        Files.setLastModifiedTime(file, FileTime.fromMillis(entry.modified()));
+    }
+
+    private BackupManifest.FileEntry store(String name, Path file, long modified, LongAdder readBytes,
+                                           LongAdder storedBytes) throws IOException {
+        MessageDigest digest = sha256();
+        List<String> chunks = new ArrayList<>();
+        long size = 0;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(CHUNK_SIZE, Math.max(1, in.size())));
+            while (true) {
+                buffer.clear();
+                while (buffer.hasRemaining() && in.read(buffer) >= 0) {
+                    // читаем кусок целиком
+                }
+                int length = buffer.position();
+                if (length == 0) {
+                    break;
+                }
+                digest.update(buffer.array(), 0, length);
+                String hash = HEX.formatHex(digest.digest());
+                storedBytes.add(store.put(hash, buffer.array(), length));
+                chunks.add(hash);
+                size += length;
+                if (length < buffer.capacity()) {
+                    break;
+                }
+                if (buffer.capacity() < CHUNK_SIZE) {
+                    buffer = ByteBuffer.allocate(CHUNK_SIZE);
+                }
+            }
+        }
+        readBytes.add(size);
+        return new BackupManifest.FileEntry(name, size, modified, chunks);
+    }
+
+    // null - файл не разбирается как region-файл или в нём есть повреждённый чанк
+    private BackupManifest.FileEntry storeRegion(String name, Path file, long modified, BackupManifest.FileEntry old,
+                                                 LongAdder reusedRegionChunks, LongAdder readBytes,
+                                                 LongAdder storedBytes) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            RegionFile region = RegionFile.map(in);
+            if (region == null) {
+                return null;
+            }
+            // Позиция чанка в прошлом манифесте по номеру ячейки
+            int[] previous = new int[RegionFile.SLOTS];
+            Arrays.fill(previous, -1);
+            BackupManifest.RegionLayout oldLayout = old == null ? null : old.region();
+            if (oldLayout != null) {
+                for (int i = 0; i < oldLayout.slots().length; i++) {
+                    previous[oldLayout.slots()[i]] = i;
+                }
+            }
+
+            MessageDigest digest = sha256();
+            List<String> chunks = new ArrayList<>();
+            int[] slots = new int[RegionFile.SLOTS];
+            int[] timestamps = new int[RegionFile.SLOTS];
+            int count = 0;
+            chunks.add(put(digest, region.header(), readBytes, storedBytes));
+            for (int slot = 0; slot < RegionFile.SLOTS; slot++) {
+                if (!region.isPresent(slot)) {
+                    continue;
+                }
+                int timestamp = region.timestamp(slot);
+                int index = previous[slot];
+                if (index >= 0 && timestamp != 0 && oldLayout.timestamps()[index] == timestamp) {
+                    chunks.add(old.chunks().get(index + 1));
+                    reusedRegionChunks.increment();
+                } else {
+                    ByteBuffer chunk = region.chunk(slot);
+                    if (chunk == null) {
+                        return null;
+                    }
+                    chunks.add(put(digest, chunk, readBytes, storedBytes));
+                }
+                slots[count] = slot;
+                timestamps[count] = timestamp;
+                count++;
+            }
+            return new BackupManifest.FileEntry(name, in.size(), modified, chunks,
+                    new BackupManifest.RegionLayout(Arrays.copyOf(slots, count), Arrays.copyOf(timestamps, count)));
+        }
+    }
+
+    private String put(MessageDigest digest, ByteBuffer data, LongAdder readBytes, LongAdder storedBytes)
+            throws IOException {
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        String hash = HEX.formatHex(digest.digest(bytes));
+        storedBytes.add(store.put(hash, bytes, bytes.length));
+        readBytes.add(bytes.length);
+        return hash;
+    }
+
+    // Чанки пишутся по смещениям из сохранённого заголовка; неиспользуемые секторы остаются нулевыми
+    private void restoreRegion(BackupManifest.FileEntry entry, Path file) throws IOException {
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            byte[] header = store.read(entry.chunks().get(0));
+            writeAt(out, header, 0);
+            int[] slots = entry.region().slots();
+            for (int i = 0; i < slots.length; i++) {
+                long offset = (long) RegionFile.sectorOffset(header, slots[i]) * RegionFile.SECTOR_SIZE;
+                writeAt(out, store.read(entry.chunks().get(i + 1)), offset);
+            }
+            if (out.size() < entry.size()) {
+                writeAt(out, new byte[1], entry.size() - 1);
+            }
+        }
+    }
+
+    private static void writeAt(FileChannel out, byte[] data, long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            offset += out.write(buffer, offset);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,488 @@
+package org.ejectfb.minecraftserverwebhandler.backup;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// Обычный ZIP (deflate, при необходимости ZIP64), в котором файлы сжимаются параллельно.
+// Файлы читаются по порядку кусками по CHUNK_SIZE; каждый кусок сжимается отдельной задачей в ForkJoinPool
+// со словарём из последних 32 КБ предыдущего куска и завершается SYNC_FLUSH, поэтому куски одного файла
+// склеиваются в один поток deflate, как в pigz. Поток записи забирает готовые куски строго по порядку.
+public final class ParallelZipWriter implements Closeable {
+    public static final int CHUNK_SIZE = 1 << 20;
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+    private static final long ZIP64_LIMIT = 0xFFFFFFFFL;
+    private static final int ZIP64_ENTRY_LIMIT = 0xFFFF;
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY = 0x06064b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+    private static final int ZIP64_EXTRA = 0x0001;
+    private static final int VERSION = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int FLAG_UTF8 = 1 << 11;
+    private static final int METHOD_DEFLATED = 8;
+    private static final Chunk END = new Chunk(null, null, 0, null, true);
+
+    public record Result(int entries, long uncompressedBytes, long compressedBytes) {
+    }
+
+    private record Deflated(byte[] data, int length) {
+    }
+
+    private final FileChannel channel;
+    private final ForkJoinPool pool;
+    private final BackupErrorListener errorListener;
+    private final BlockingQueue<Chunk> queue;
+    private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+    private final CRC32 crc = new CRC32();
+    private final Thread writer;
+    // Дальше - только поток записи, после join - вызывающий поток
+    private final List<Entry> entries = new ArrayList<>();
+    private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long position;
+    private long uncompressedBytes;
+    private volatile IOException failure;
+    private boolean finished;
+
+    public ParallelZipWriter(Path target, int threads, BackupErrorListener errorListener) throws IOException {
+        this.channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.pool = new ForkJoinPool(Math.max(1, threads));
+        this.errorListener = errorListener;
+        // Очередь ограничивает память: не больше двух кусков на поток ждут записи
+        this.queue = new ArrayBlockingQueue<>(Math.max(2, threads * 2));
+        this.writer = Thread.ofPlatform().name("backup-zip-writer").daemon(true).start(this::write);
+    }
+
+    // Вызывается из одного потока; ошибки чтения файла передаются в BackupErrorListener, а файл пропускается
+    public void addFile(String name, Path file) throws IOException {
+        checkFailure();
+        Entry entry;
+        try {
+            long expectedSize = Files.size(file);
+            entry = new Entry(name.getBytes(StandardCharsets.UTF_8), dosTime(Files.getLastModifiedTime(file)),
+                    expectedSize >= ZIP64_LIMIT - CHUNK_SIZE);
+        } catch (IOException e) {
+            errorListener.onError(file, e);
+            return;
+        }
+
+        crc.reset();
+        long size = 0;
+        byte[] previous = null;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            byte[] current = new byte[(int) Math.min(CHUNK_SIZE, in.size() + 1)];
+            int length = readFully(in, current);
+            while (true) {
+                crc.update(current, 0, length);
+                size += length;
+                // Кусок заполнен целиком - файл мог ещё не закончиться
+                byte[] next = null;
+                int nextLength = 0;
+                if (length == current.length) {
+                    next = new byte[CHUNK_SIZE];
+                    nextLength = readFully(in, next);
+                }
+                boolean last = nextLength == 0;
+                if (last) {
+                    entry.crc = crc.getValue();
+                    entry.size = size;
+                }
+                enqueue(new Chunk(entry, current, length, previous, last));
+                if (last) {
+                    uncompressedBytes += size;
+                    return;
+                }
+                previous = current;
+                current = next;
+                length = nextLength;
+            }
+        } catch (IOException e) {
+            checkFailure();
+            // Уже записанная часть файла будет отрезана потоком записи
+            enqueue(Chunk.failed(entry));
+            errorListener.onError(file, e);
+        }
+    }
+
+    public Result finish() throws IOException {
+        enqueue(END);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing archive");
+        }
+        checkFailure();
+
+        long centralDirectoryOffset = position;
+        for (Entry entry : entries) {
+            writeCentralHeader(entry);
+        }
+        long centralDirectorySize = position - centralDirectoryOffset;
+        writeEnd(centralDirectoryOffset, centralDirectorySize);
+        flush();
+        channel.force(true);
+        finished = true;
+        return new Result(entries.size(), uncompressedBytes, position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!finished && writer.isAlive()) {
+            failure = new IOException("Archive closed before finish");
+            writer.interrupt();
+        }
+        pool.shutdownNow();
+        Deflater deflater;
+        while ((deflater = deflaters.poll()) != null) {
+            deflater.end();
+        }
+        channel.close();
+    }
+
+    private void enqueue(Chunk chunk) throws IOException {
+        if (chunk != END && chunk.data != null) {
+            chunk.deflated = pool.submit(() -> deflate(chunk));
+        }
+        try {
+            while (!queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing archive");
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        IOException error = failure;
+        if (error != null) {
+            throw new IOException("Failed to write archive: " + error.getMessage(), error);
+        }
+    }
+
+    private Deflated deflate(Chunk chunk) {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+        try {
+            if (chunk.dictionary != null) {
+                int length = Math.min(DICTIONARY_SIZE, chunk.dictionary.length);
+                deflater.setDictionary(chunk.dictionary, chunk.dictionary.length - length, length);
+            }
+            deflater.setInput(chunk.data, 0, chunk.length);
+            if (chunk.last) {
+                deflater.finish();
+            }
+            byte[] output = new byte[chunk.length + (chunk.length >> 12) + 64];
+            int length = 0;
+            while (true) {
+                if (length == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                length += deflater.deflate(output, length, output.length - length,
+                        chunk.last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                // После SYNC_FLUSH вывод закончен, если deflate не заполнил весь оставшийся буфер
+                if (chunk.last ? deflater.finished() : length < output.length && deflater.needsInput()) {
+                    return new Deflated(output, length);
+                }
+            }
+        } finally {
+            deflater.reset();
+            deflaters.offer(deflater);
+        }
+    }
+
+    private void write() {
+        try {
+            Chunk chunk;
+            while ((chunk = queue.take()) != END) {
+                Entry entry = chunk.entry;
+                if (chunk.data == null) {
+                    if (entry.headerWritten) {
+                        flush();
+                        channel.truncate(entry.offset);
+                        position = entry.offset;
+                    }
+                    continue;
+                }
+
+                Deflated deflated = chunk.deflated.get();
+                if (!entry.headerWritten) {
+                    entry.offset = position;
+                    // Файл из одного куска: размеры известны сразу, иначе заголовок дописывается в конце файла
+                    if (chunk.last) {
+                        entry.compressedSize = deflated.length;
+                    }
+                    writeLocalHeader(entry);
+                    entry.headerWritten = true;
+                    entry.compressedSize = 0;
+                }
+                write(deflated.data, deflated.length);
+                entry.compressedSize += deflated.length;
+                if (chunk.last) {
+                    if (chunk.dictionary != null) {
+                        patchLocalHeader(entry);
+                    }
+                    entries.add(entry);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (failure == null) {
+                failure = new InterruptedIOException("Archive writer interrupted");
+            }
+        } catch (ExecutionException e) {
+            failure = new IOException("Compression failed: " + e.getCause(), e.getCause());
+        } catch (IOException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = new IOException(e);
+        }
+    }
+
+    private void writeLocalHeader(Entry entry) throws IOException {
+        ensure(30 + entry.name.length + 20);
+        buffer.putInt(LOCAL_HEADER);
+        buffer.putShort((short) (entry.zip64Local ? VERSION_ZIP64 : VERSION));
+        buffer.putShort((short) FLAG_UTF8);
+        buffer.putShort((short) METHOD_DEFLATED);
+        buffer.putInt(entry.dosTime);
+        buffer.putInt((int) entry.crc);
+        if (entry.zip64Local) {
+            buffer.putInt((int) ZIP64_LIMIT);
+            buffer.putInt((int) ZIP64_LIMIT);
+        } else {
+            buffer.putInt((int) entry.compressedSize);
+            buffer.putInt((int) entry.size);
+        }
+        buffer.putShort((short) entry.name.length);
+        buffer.putShort((short) (entry.zip64Local ? 20 : 0));
+        buffer.put(entry.name);
+        if (entry.zip64Local) {
+            buffer.putShort((short) ZIP64_EXTRA);
+            buffer.putShort((short) 16);
+            buffer.putLong(entry.size);
+            buffer.putLong(entry.compressedSize);
+        }
+        position += 30 + entry.name.length + (entry.zip64Local ? 20 : 0);
+    }
+
+    // Файл из нескольких кусков: CRC и размеры становятся известны только после последнего куска
+    private void patchLocalHeader(Entry entry) throws IOException {
+        flush();
+        ByteBuffer patch = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        patch.putInt((int) entry.crc).flip();
+        writeAt(patch, entry.offset + 14);
+        patch.clear();
+        if (entry.zip64Local) {
+            patch.putLong(entry.size).putLong(entry.compressedSize).flip();
+            writeAt(patch, entry.offset + 30 + entry.name.length + 4);
+        } else {
+            patch.putInt((int) entry.compressedSize).putInt((int) entry.size).flip();
+            writeAt(patch, entry.offset + 18);
+        }
+    }
+
+    private void writeCentralHeader(Entry entry) throws IOException {
+        boolean sizeOverflow = entry.size >= ZIP64_LIMIT;
+        boolean compressedOverflow = entry.compressedSize >= ZIP64_LIMIT;
+        boolean offsetOverflow = entry.offset >= ZIP64_LIMIT;
+        int extraLength = (sizeOverflow ? 8 : 0) + (compressedOverflow ? 8 : 0) + (offsetOverflow ? 8 : 0);
+        if (extraLength > 0) {
+            extraLength += 4;
+        }
+        int version = extraLength > 0 || entry.zip64Local ? VERSION_ZIP64 : VERSION;
+
+        ensure(46 + entry.name.length + extraLength);
+        buffer.putInt(CENTRAL_HEADER);
+        buffer.putShort((short) version);
+        buffer.putShort((short) version);
+        buffer.putShort((short) FLAG_UTF8);
+        buffer.putShort((short) METHOD_DEFLATED);
+        buffer.putInt(entry.dosTime);
+        buffer.putInt((int) entry.crc);
+        buffer.putInt((int) (compressedOverflow ? ZIP64_LIMIT : entry.compressedSize));
+        buffer.putInt((int) (sizeOverflow ? ZIP64_LIMIT : entry.size));
+        buffer.putShort((short) entry.name.length);
+        buffer.putShort((short) extraLength);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putInt(0);
+        buffer.putInt((int) (offsetOverflow ? ZIP64_LIMIT : entry.offset));
+        buffer.put(entry.name);
+        if (extraLength > 0) {
+            buffer.putShort((short) ZIP64_EXTRA);
+            buffer.putShort((short) (extraLength - 4));
+            if (sizeOverflow) {
+                buffer.putLong(entry.size);
+            }
+            if (compressedOverflow) {
+                buffer.putLong(entry.compressedSize);
+            }
+            if (offsetOverflow) {
+                buffer.putLong(entry.offset);
+            }
+        }
+        position += 46 + entry.name.length + extraLength;
+    }
+
+    private void writeEnd(long centralDirectoryOffset, long centralDirectorySize) throws IOException {
+        int count = entries.size();
+        boolean zip64 = count >= ZIP64_ENTRY_LIMIT || centralDirectoryOffset >= ZIP64_LIMIT
+                || centralDirectorySize >= ZIP64_LIMIT;
+        ensure(56 + 20 + 22);
+        if (zip64) {
+            long zip64EndOffset = position;
+            buffer.putInt(ZIP64_END_OF_CENTRAL_DIRECTORY);
+            buffer.putLong(44);
+            buffer.putShort((short) VERSION_ZIP64);
+            buffer.putShort((short) VERSION_ZIP64);
+            buffer.putInt(0);
+            buffer.putInt(0);
+            buffer.putLong(count);
+            buffer.putLong(count);
+            buffer.putLong(centralDirectorySize);
+            buffer.putLong(centralDirectoryOffset);
+
+            buffer.putInt(ZIP64_LOCATOR);
+            buffer.putInt(0);
+            buffer.putLong(zip64EndOffset);
+            buffer.putInt(1);
+            position += 56 + 20;
+        }
+        buffer.putInt(END_OF_CENTRAL_DIRECTORY);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) Math.min(count, ZIP64_ENTRY_LIMIT));
+        buffer.putShort((short) Math.min(count, ZIP64_ENTRY_LIMIT));
+        buffer.putInt((int) Math.min(centralDirectorySize, ZIP64_LIMIT));
+        buffer.putInt((int) Math.min(centralDirectoryOffset, ZIP64_LIMIT));
+        buffer.putShort((short) 0);
+        position += 22;
+    }
+
+    private void write(byte[] data, int length) throws IOException {
+        if (length > buffer.remaining()) {
+            flush();
+        }
+        if (length > buffer.capacity()) {
+            ByteBuffer direct = ByteBuffer.wrap(data, 0, length);
+            while (direct.hasRemaining()) {
+                channel.write(direct);
+            }
+        } else {
+            buffer.put(data, 0, length);
+        }
+        position += length;
+    }
+
+    private void ensure(int length) throws IOException {
+        if (buffer.remaining() < length) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void writeAt(ByteBuffer data, long offset) throws IOException {
+        while (data.hasRemaining()) {
+            offset += channel.write(data, offset);
+        }
+    }
+
+    private static int readFully(FileChannel in, byte[] target) throws IOException {
+        ByteBuffer wrapped = ByteBuffer.wrap(target);
+        while (wrapped.hasRemaining() && in.read(wrapped) >= 0) {
+            // читаем до конца буфера или файла
+        }
+        return wrapped.position();
+    }
+
+    // Время и дата MS-DOS: младшие 16 бит - время с точностью до 2 секунд, старшие - дата с 1980 года
+    private static int dosTime(FileTime time) {
+        LocalDateTime local = LocalDateTime.ofInstant(time.toInstant(), ZoneId.systemDefault());
+        if (local.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (local.getYear() - 1980) << 25 | local.getMonthValue() << 21 | local.getDayOfMonth() << 16
+                | local.getHour() << 11 | local.getMinute() << 5 | local.getSecond() >> 1;
+    }
+
+    private static final class Entry {
+        final byte[] name;
+        final int dosTime;
+        final boolean zip64Local;
+        // Заполняются до постановки последнего куска в очередь
+        long crc;
+        long size;
+        long offset;
+        long compressedSize;
+        boolean headerWritten;
+
+        Entry(byte[] name, int dosTime, boolean zip64Local) {
+            this.name = name;
+            this.dosTime = dosTime;
+            this.zip64Local = zip64Local;
+        }
+    }
+
+    private static final class Chunk {
+        final Entry entry;
+        // null - чтение файла не удалось, начатую запись нужно отрезать
+        final byte[] data;
+        final int length;
+        // Предыдущий кусок того же файла, его хвост - словарь для сжатия
+        final byte[] dictionary;
+        final boolean last;
+        ForkJoinTask<Deflated> deflated;
+
+        Chunk(Entry entry, byte[] data, int length, byte[] dictionary, boolean last) {
+            this.entry = entry;
+            this.data = data;
+            this.length = length;
+            this.dictionary = dictionary;
+            this.last = last;
+        }
+
+        static Chunk failed(Entry entry) {
+            return new Chunk(entry, null, 0, null, true);
+        }
+    }
+}
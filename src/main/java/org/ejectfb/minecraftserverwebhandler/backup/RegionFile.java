@@ -0,0 +1,77 @@
+package org.ejectfb.minecraftserverwebhandler.backup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Region-файл Minecraft (.mca): 8 КБ заголовка - 1024 записи о расположении (смещение в секторах по 4 КБ
+// и число секторов) и 1024 времени последней записи чанка, дальше данные чанков по секторам.
+// Файл отображается в память, поэтому с диска читаются только страницы тех чанков, к которым обращаются.
+final class RegionFile {
+    static final String EXTENSION = ".mca";
+    static final int SLOTS = 1024;
+    static final int SECTOR_SIZE = 4096;
+    static final int HEADER_SIZE = 2 * SECTOR_SIZE;
+
+    private final MappedByteBuffer data;
+    private final int sectors;
+
+    private RegionFile(MappedByteBuffer data) {
+        this.data = data;
+        this.sectors = data.capacity() / SECTOR_SIZE;
+    }
+
+    // null - файл не похож на region-файл и сохраняется как обычный
+    static RegionFile map(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+            return null;
+        }
+        RegionFile region = new RegionFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        for (int slot = 0; slot < SLOTS; slot++) {
+            int offset = region.sectorOffset(slot);
+            int count = region.sectorCount(slot);
+            if (offset != 0 && (offset < 2 || offset + count > region.sectors + 1)) {
+                return null;
+            }
+        }
+        return region;
+    }
+
+    ByteBuffer header() {
+        return data.slice(0, HEADER_SIZE);
+    }
+
+    boolean isPresent(int slot) {
+        return sectorOffset(slot) != 0 && sectorCount(slot) != 0;
+    }
+
+    int timestamp(int slot) {
+        return data.getInt(SECTOR_SIZE + slot * 4);
+    }
+
+    // Длина из заголовка чанка плюс сами 4 байта длины; хвост последнего сектора не сохраняется.
+    // null - длина чанка не помещается в его секторы, такой файл сохраняется как обычный
+    ByteBuffer chunk(int slot) {
+        int position = sectorOffset(slot) * SECTOR_SIZE;
+        int available = Math.min(sectorCount(slot) * SECTOR_SIZE, data.capacity() - position);
+        int length = available >= 4 ? data.getInt(position) + 4 : -1;
+        if (length < 4 || length > available) {
+            return null;
+        }
+        return data.slice(position, length);
+    }
+
+    int sectorOffset(int slot) {
+        return data.getInt(slot * 4) >>> 8;
+    }
+
+    private int sectorCount(int slot) {
+        return data.get(slot * 4 + 3) & 0xFF;
+    }
+
+    static int sectorOffset(byte[] header, int slot) {
+        return ByteBuffer.wrap(header).getInt(slot * 4) >>> 8;
+    }
+}
@@ -3,6 +3,9 @@ package org.ejectfb.minecraftserverwebhandler.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 @ConfigurationProperties(prefix = "server")
 public class ServerProperties {
@@ -14,6 +17,9 @@ public class ServerProperties {
     private Telegram telegram = new Telegram();
     private Security security = new Security();
     private Backup backup = new Backup();
+    private Console console = new Console();
+    private Metrics metrics = new Metrics();
+    private Players players = new Players();
 
 
     public static class Memory {
@@ -92,6 +98,13 @@ public class ServerProperties {
         private boolean enableRestartNotifications;
         private String notificationTemplate;
         private String notificationTimes;
+        // Потоков сжатия архива; 0 - по числу ядер
+        private int threads;
+        // Инкрементальные бэкапы в хранилище кусков вместо полного ZIP
+        private boolean incremental;
+        // Бэкап без остановки сервера: save-off, save-all flush, копия мира, save-on
+        private boolean hot;
+        private int saveTimeoutSeconds;
 
         public boolean isDailyEnabled() { return dailyEnabled; }
         public void setDailyEnabled(boolean dailyEnabled) { this.dailyEnabled = dailyEnabled; }
@@ -117,6 +130,107 @@ public class ServerProperties {
         public void setNotificationTemplate(String notificationTemplate) {this.notificationTemplate = notificationTemplate;}
         public String getNotificationTimes() {return notificationTimes;}
         public void setNotificationTimes(String notificationTimes) {this.notificationTimes = notificationTimes;}
+        public int getThreads() { return threads; }
+        public void setThreads(int threads) { this.threads = threads; }
+        public boolean isIncremental() { return incremental; }
+        public void setIncremental(boolean incremental) { this.incremental = incremental; }
+        public boolean isHot() { return hot; }
+        public void setHot(boolean hot) { this.hot = hot; }
+        public int getSaveTimeoutSeconds() { return saveTimeoutSeconds; }
+        public void setSaveTimeoutSeconds(int saveTimeoutSeconds) { this.saveTimeoutSeconds = saveTimeoutSeconds; }
+    }
+
+    public static class Console {
+        private int broadcastIntervalMs = 50;
+        private int broadcastMaxLines = 256;
+        private int historySize = 16384;
+        private int replayPageSize = 500;
+        private int replayLimit = 2000;
+        private List<String> ruleSets = new ArrayList<>(List.of("vanilla", "paper", "nlogin", "forge"));
+        private boolean journalEnabled = true;
+        private String journalDirectory = "console-journal";
+        private int journalSegmentSizeMb = 16;
+        private int journalRetentionMb = 1024;
+        private int journalRetentionDays = 30;
+        private boolean searchEnabled = true;
+        private int searchMaxLines = 1_000_000;
+        private int searchGenerationLines = 65536;
+        private int sendBufferSizeKb = 1024;
+        private int sendTimeLimitMs = 15000;
+        private int maxPendingFrames = 32;
+        private int commandTimeoutMs = 5000;
+
+        public int getBroadcastIntervalMs() { return broadcastIntervalMs; }
+        public void setBroadcastIntervalMs(int broadcastIntervalMs) { this.broadcastIntervalMs = broadcastIntervalMs; }
+        public int getBroadcastMaxLines() { return broadcastMaxLines; }
+        public void setBroadcastMaxLines(int broadcastMaxLines) { this.broadcastMaxLines = broadcastMaxLines; }
+        public int getHistorySize() { return historySize; }
+        public void setHistorySize(int historySize) { this.historySize = historySize; }
+        public int getReplayPageSize() { return replayPageSize; }
+        public void setReplayPageSize(int replayPageSize) { this.replayPageSize = replayPageSize; }
+        public int getReplayLimit() { return replayLimit; }
+        public void setReplayLimit(int replayLimit) { this.replayLimit = replayLimit; }
+        public List<String> getRuleSets() { return ruleSets; }
+        public void setRuleSets(List<String> ruleSets) { this.ruleSets = ruleSets; }
+        public boolean isJournalEnabled() { return journalEnabled; }
+        public void setJournalEnabled(boolean journalEnabled) { this.journalEnabled = journalEnabled; }
+        public String getJournalDirectory() { return journalDirectory; }
+        public void setJournalDirectory(String journalDirectory) { this.journalDirectory = journalDirectory; }
+        public int getJournalSegmentSizeMb() { return journalSegmentSizeMb; }
+        public void setJournalSegmentSizeMb(int journalSegmentSizeMb) { this.journalSegmentSizeMb = journalSegmentSizeMb; }
+        public int getJournalRetentionMb() { return journalRetentionMb; }
+        public void setJournalRetentionMb(int journalRetentionMb) { this.journalRetentionMb = journalRetentionMb; }
+        public int getJournalRetentionDays() { return journalRetentionDays; }
+        public void setJournalRetentionDays(int journalRetentionDays) { this.journalRetentionDays = journalRetentionDays; }
+        public boolean isSearchEnabled() { return searchEnabled; }
+        public void setSearchEnabled(boolean searchEnabled) { this.searchEnabled = searchEnabled; }
+        public int getSearchMaxLines() { return searchMaxLines; }
+        public void setSearchMaxLines(int searchMaxLines) { this.searchMaxLines = searchMaxLines; }
+        public int getSearchGenerationLines() { return searchGenerationLines; }
+        public void setSearchGenerationLines(int searchGenerationLines) { this.searchGenerationLines = searchGenerationLines; }
+        public int getSendBufferSizeKb() { return sendBufferSizeKb; }
+        public void setSendBufferSizeKb(int sendBufferSizeKb) { this.sendBufferSizeKb = sendBufferSizeKb; }
+        public int getSendTimeLimitMs() { return sendTimeLimitMs; }
+        public void setSendTimeLimitMs(int sendTimeLimitMs) { this.sendTimeLimitMs = sendTimeLimitMs; }
+        public int getMaxPendingFrames() { return maxPendingFrames; }
+        public void setMaxPendingFrames(int maxPendingFrames) { this.maxPendingFrames = maxPendingFrames; }
+        public int getCommandTimeoutMs() { return commandTimeoutMs; }
+        public void setCommandTimeoutMs(int commandTimeoutMs) { this.commandTimeoutMs = commandTimeoutMs; }
+    }
+
+    public static class Metrics {
+        private String directory = "metrics";
+        private int persistIntervalSec = 300;
+        private int rawCapacity = 4096;
+        private int minuteCapacity = 10080;
+        private int hourCapacity = 8760;
+        private boolean processSamplingEnabled = true;
+        private int processSampleIntervalMs = 5000;
+        private int statsMaxUpdatesPerSecond = 4;
+
+        public String getDirectory() { return directory; }
+        public void setDirectory(String directory) { this.directory = directory; }
+        public int getPersistIntervalSec() { return persistIntervalSec; }
+        public void setPersistIntervalSec(int persistIntervalSec) { this.persistIntervalSec = persistIntervalSec; }
+        public int getRawCapacity() { return rawCapacity; }
+        public void setRawCapacity(int rawCapacity) { this.rawCapacity = rawCapacity; }
+        public int getMinuteCapacity() { return minuteCapacity; }
+        public void setMinuteCapacity(int minuteCapacity) { this.minuteCapacity = minuteCapacity; }
+        public int getHourCapacity() { return hourCapacity; }
+        public void setHourCapacity(int hourCapacity) { this.hourCapacity = hourCapacity; }
+        public boolean isProcessSamplingEnabled() { return processSamplingEnabled; }
+        public void setProcessSamplingEnabled(boolean processSamplingEnabled) { this.processSamplingEnabled = processSamplingEnabled; }
+        public int getProcessSampleIntervalMs() { return processSampleIntervalMs; }
+        public void setProcessSampleIntervalMs(int processSampleIntervalMs) { this.processSampleIntervalMs = processSampleIntervalMs; }
+        public int getStatsMaxUpdatesPerSecond() { return statsMaxUpdatesPerSecond; }
+        public void setStatsMaxUpdatesPerSecond(int statsMaxUpdatesPerSecond) { this.statsMaxUpdatesPerSecond = statsMaxUpdatesPerSecond; }
+    }
+
+    public static class Players {
+        private String directory = "player-activity";
+
+        public String getDirectory() { return directory; }
+        public void setDirectory(String directory) { this.directory = directory; }
     }
 
     public Memory getMemory() {
@@ -182,4 +296,28 @@ public class ServerProperties {
     public void setBackup(Backup backup) {
         this.backup = backup;
     }
+
+    public Console getConsole() {
+        return console;
+    }
+
+    public void setConsole(Console console) {
+        this.console = console;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public Players getPlayers() {
+        return players;
+    }
+
+    public void setPlayers(Players players) {
+        this.players = players;
+    }
 }
\ No newline at end of file
@@ -1,14 +1,24 @@
 package org.ejectfb.minecraftserverwebhandler.config;
 
+import org.ejectfb.minecraftserverwebhandler.handlers.ConsoleSessionMonitor;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+    private final ServerProperties serverProperties;
+    private final ConsoleSessionMonitor consoleSessionMonitor;
+
+    public WebSocketConfig(ServerProperties serverProperties, ConsoleSessionMonitor consoleSessionMonitor) {
+        this.serverProperties = serverProperties;
+        this.consoleSessionMonitor = consoleSessionMonitor;
+    }
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
@@ -20,4 +30,17 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws").withSockJS();
     }
-}
\ No newline at end of file
+
+    // Лимиты буфера и времени отправки - последняя защита; медленных клиентов раньше притормаживает ConsoleSessionMonitor
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendBufferSizeLimit(Math.max(64, serverProperties.getConsole().getSendBufferSizeKb()) * 1024);
+        registration.setSendTimeLimit(Math.max(1000, serverProperties.getConsole().getSendTimeLimitMs()));
+        registration.addDecoratorFactory(consoleSessionMonitor);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(consoleSessionMonitor);
+    }
+}
@@ -0,0 +1,48 @@
+package org.ejectfb.minecraftserverwebhandler.controllers;
+
+import org.ejectfb.minecraftserverwebhandler.config.ServerProperties;
+import org.ejectfb.minecraftserverwebhandler.dto.ConsoleLine;
+import org.ejectfb.minecraftserverwebhandler.dto.ConsoleReplayPage;
+import org.ejectfb.minecraftserverwebhandler.services.ConsoleLogService;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.stereotype.Controller;
+
+import java.util.List;
+
+@Controller
+public class ConsoleSocketController {
+    private final ConsoleLogService consoleLogService;
+    private final ServerProperties serverProperties;
+
+    public ConsoleSocketController(ConsoleLogService consoleLogService, ServerProperties serverProperties) {
+        this.consoleLogService = consoleLogService;
+        this.serverProperties = serverProperties;
+    }
+
+    // Ответ на SUBSCRIBE уходит только подписавшейся сессии, остальные вкладки его не получают
+    @SubscribeMapping("/console/history")
+    public ConsoleReplayPage history(SimpMessageHeaderAccessor headers) {
+        int pageSize = Math.max(1, serverProperties.getConsole().getReplayPageSize());
+        int replayLimit = Math.max(pageSize, serverProperties.getConsole().getReplayLimit());
+        long head = consoleLogService.getLastSequence();
+        long since = parseSince(headers.getFirstNativeHeader("since"));
+
+        if (since <= 0) {
+            return new ConsoleReplayPage(consoleLogService.getTail(pageSize), head, false, pageSize, replayLimit);
+        }
+
+        long replayFrom = Math.max(since, head - replayLimit);
+        List<ConsoleLine> lines = consoleLogService.getLogs(replayFrom, pageSize);
+        boolean hasMore = !lines.isEmpty() && lines.get(lines.size() - 1).seq() < head;
+        return new ConsoleReplayPage(lines, head, hasMore, pageSize, replayLimit);
+    }
+
+    private long parseSince(String since) {
+        try {
+            return since == null ? 0 : Long.parseLong(since);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
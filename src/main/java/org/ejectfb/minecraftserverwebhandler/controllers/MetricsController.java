@@ -0,0 +1,121 @@
+package org.ejectfb.minecraftserverwebhandler.controllers;
+
+import org.ejectfb.minecraftserverwebhandler.dto.ProcessStats;
+import org.ejectfb.minecraftserverwebhandler.handlers.ConsoleSessionMonitor;
+import org.ejectfb.minecraftserverwebhandler.metrics.ConsolePipelineMetrics;
+import org.ejectfb.minecraftserverwebhandler.metrics.OpenMetricsWriter;
+import org.ejectfb.minecraftserverwebhandler.services.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+// Только уже известные значения: при сборе метрик команды на сервер не отправляются
+@RestController
+public class MetricsController {
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final double MILLIS_PER_SECOND = 1e3;
+
+    private final ServerService serverService;
+    private final ServerDataService serverDataService;
+    private final ConsoleJournalService consoleJournalService;
+    private final ConsoleSearchService consoleSearchService;
+    private final ConsoleSessionMonitor consoleSessionMonitor;
+    private final BackupService backupService;
+    private final TelegramBotService telegramBotService;
+    private final ProcessSamplerService processSamplerService;
+    private final ConsolePipelineMetrics pipelineMetrics;
+
+    public MetricsController(ServerService serverService,
+                             ServerDataService serverDataService,
+                             ConsoleJournalService consoleJournalService,
+                             ConsoleSearchService consoleSearchService,
+                             ConsoleSessionMonitor consoleSessionMonitor,
+                             BackupService backupService,
+                             TelegramBotService telegramBotService,
+                             ProcessSamplerService processSamplerService,
+                             ConsolePipelineMetrics pipelineMetrics) {
+        this.serverService = serverService;
+        this.serverDataService = serverDataService;
+        this.consoleJournalService = consoleJournalService;
+        this.consoleSearchService = consoleSearchService;
+        this.consoleSessionMonitor = consoleSessionMonitor;
+        this.backupService = backupService;
+        this.telegramBotService = telegramBotService;
+        this.processSamplerService = processSamplerService;
+        this.pipelineMetrics = pipelineMetrics;
+    }
+
+    @GetMapping("/metrics")
+    public ResponseEntity<String> metrics() {
+        boolean running = serverService.isServerRunning();
+        long startTime = serverDataService.getServerStartTime();
+        double uptime = running && startTime > 0 ? (System.currentTimeMillis() - startTime) / MILLIS_PER_SECOND : 0;
+        TelegramNotificationDispatcher telegram = telegramBotService.getDispatcher();
+        ProcessStats process = processSamplerService.getLastStats();
+
+        String body = new OpenMetricsWriter()
+                .gauge("minecraft_up", "Whether the Minecraft server process is running", running ? 1 : 0)
+                .gauge("minecraft_uptime_seconds", "Time since the Minecraft server was started", uptime)
+                .gauge("minecraft_tps", "Last reported ticks per second", serverDataService.getTpsValue())
+                .gauge("minecraft_players_online", "Last known number of online players", serverDataService.getOnlinePlayersValue())
+                .gauge("minecraft_memory_used_bytes", "Last reported heap usage",
+                        serverDataService.getMemoryUsedMb() * 1024 * 1024)
+                .gauge("minecraft_memory_max_bytes", "Last reported maximum heap",
+                        serverDataService.getMemoryMaxMb() * 1024 * 1024)
+                .gauge("minecraft_process_cpu_percent", "CPU usage of the server JVM, 100 per fully used core",
+                        process == null || process.cpuPercent() == null ? Double.NaN : process.cpuPercent())
+                .gauge("minecraft_process_resident_memory_bytes", "Resident set size of the server JVM",
+                        process == null || process.rssBytes() == null ? Double.NaN : process.rssBytes())
+                .gauge("minecraft_process_threads", "Threads in the server JVM",
+                        process == null || process.threads() == null ? Double.NaN : process.threads())
+                .gauge("minecraft_process_context_switches_per_second", "Context switches of all server JVM threads",
+                        process == null || process.contextSwitchesPerSecond() == null ? Double.NaN : process.contextSwitchesPerSecond())
+                .gauge("minecraft_process_disk_read_bytes_per_second", "Storage reads of the server JVM",
+                        process == null || process.diskReadBytesPerSecond() == null ? Double.NaN : process.diskReadBytesPerSecond())
+                .gauge("minecraft_process_disk_write_bytes_per_second", "Storage writes of the server JVM",
+                        process == null || process.diskWriteBytesPerSecond() == null ? Double.NaN : process.diskWriteBytesPerSecond())
+                .counter("minecraft_starts", "Minecraft server starts", serverService.getStartCount())
+                .counter("minecraft_crash_restarts", "Automatic restarts after an unexpected stop",
+                        serverService.getCrashRestartCount())
+                .counter("handler_console_lines", "Lines read from the server output", serverService.getOutputLines())
+                .counter("handler_console_bytes", "Bytes read from the server output", serverService.getOutputBytes())
+                .histogram("handler_console_stage_seconds",
+                        "Latency of console pipeline stages, end_to_end is from stdout read to WebSocket send",
+                        "stage", pipelineMetrics.snapshot())
+                .gauge("handler_console_journal_bytes", "Size of the on-disk console journal", consoleJournalService.getSizeBytes())
+                .counter("handler_console_journal_dropped_lines", "Lines not written to the journal because its queue was full",
+                        consoleJournalService.getDroppedLines())
+                .gauge("handler_console_search_indexed_lines", "Lines in the console search index", consoleSearchService.getIndexedLines())
+                .counter("handler_console_search_dropped_lines", "Lines not indexed because the indexer queue was full",
+                        consoleSearchService.getDroppedLines())
+                .gauge("handler_websocket_sessions", "Open WebSocket sessions", consoleSessionMonitor.getSessionCount())
+                .counter("handler_websocket_console_frames_sent", "Console frames written to WebSocket sessions",
+                        consoleSessionMonitor.getTotalSentFrames())
+                .counter("handler_websocket_console_frames_dropped", "Console frames dropped for slow WebSocket sessions",
+                        consoleSessionMonitor.getTotalDroppedFrames())
+                .counter("handler_websocket_console_lines_dropped", "Console lines dropped for slow WebSocket sessions",
+                        consoleSessionMonitor.getTotalDroppedLines())
+                .counter("handler_backups", "Successful backups", backupService.getBackupCount())
+                .counter("handler_backup_failures", "Failed backups", backupService.getBackupFailureCount())
+                .counter("handler_backup_bytes", "Bytes written by successful backups", backupService.getBackupBytes())
+                .counter("handler_backup_seconds", "Time spent in successful backups",
+                        backupService.getBackupMillis() / MILLIS_PER_SECOND)
+                .gauge("handler_backup_last_size_bytes", "Size of the last successful backup", backupService.getLastBackupSizeBytes())
+                .gauge("handler_backup_last_duration_seconds", "Duration of the last successful backup",
+                        backupService.getLastBackupDurationMs() / MILLIS_PER_SECOND)
+                .summary("handler_telegram_send_seconds", "Telegram API request latency",
+                        telegram.getSendAttempts(), telegram.getSendNanos() / NANOS_PER_SECOND)
+                .counter("handler_telegram_sent", "Telegram notifications delivered", telegram.getSentCount())
+                .counter("handler_telegram_failed", "Telegram notifications that failed after all retries",
+                        telegram.getFailedCount())
+                .counter("handler_telegram_dropped", "Telegram notifications dropped because the queue was full",
+                        telegram.getDroppedCount())
+                .gauge("handler_telegram_queue_size", "Telegram notifications waiting to be sent", telegram.getQueueSize())
+                .finish();
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, OpenMetricsWriter.CONTENT_TYPE)
+                .body(body);
+    }
+}
@@ -3,17 +3,33 @@ package org.ejectfb.minecraftserverwebhandler.controllers;
 import jakarta.servlet.http.HttpServletRequest;
 import org.ejectfb.minecraftserverwebhandler.config.SecurityConfig;
 import org.ejectfb.minecraftserverwebhandler.config.ServerProperties;
+import org.ejectfb.minecraftserverwebhandler.dto.BackupEntry;
+import org.ejectfb.minecraftserverwebhandler.dto.ConsoleHistoryPage;
+import org.ejectfb.minecraftserverwebhandler.dto.ConsoleLine;
+import org.ejectfb.minecraftserverwebhandler.dto.ConsoleSearchPage;
+import org.ejectfb.minecraftserverwebhandler.dto.ConsoleSessionStats;
+import org.ejectfb.minecraftserverwebhandler.dto.LatencyStats;
+import org.ejectfb.minecraftserverwebhandler.dto.PlayerActivityPoint;
+import org.ejectfb.minecraftserverwebhandler.dto.PlayerSummary;
 import org.ejectfb.minecraftserverwebhandler.dto.ServerStats;
+import org.ejectfb.minecraftserverwebhandler.dto.TimeSeriesRange;
+import org.ejectfb.minecraftserverwebhandler.handlers.ConsoleSessionMonitor;
+import org.ejectfb.minecraftserverwebhandler.metrics.ConsolePipelineMetrics;
+import org.ejectfb.minecraftserverwebhandler.metrics.LatencyHistogram;
+import org.ejectfb.minecraftserverwebhandler.metrics.TimeSeries;
 import org.ejectfb.minecraftserverwebhandler.services.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneId;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,6 +44,8 @@ public class ServerController {
     private final ServerDataService serverDataService;
     private final TelegramBotService telegramBotService;
     private final SimpMessagingTemplate messagingTemplate;
+    private static final int MAX_JOURNAL_PAGE = 10000;
+    private static final int MAX_SEARCH_PAGE = 1000;
     private final ScheduledExecutorService scheduler = java.util.concurrent.Executors.newSingleThreadScheduledExecutor();
 
     @Autowired
@@ -41,6 +59,20 @@ public class ServerController {
     @Autowired
     private ConsoleLogService consoleLogService;
     @Autowired
+    private ConsoleBroadcastService consoleBroadcastService;
+    @Autowired
+    private ConsoleJournalService consoleJournalService;
+    @Autowired
+    private ConsoleSearchService consoleSearchService;
+    @Autowired
+    private ConsoleSessionMonitor consoleSessionMonitor;
+    @Autowired
+    private TimeSeriesService timeSeriesService;
+    @Autowired
+    private PlayerActivityService playerActivityService;
+    @Autowired
+    private ConsolePipelineMetrics pipelineMetrics;
+    @Autowired
     public ServerController(ServerService serverService,
                             ServerDataService serverDataService,
                             TelegramBotService telegramBotService,
@@ -72,9 +104,9 @@ public class ServerController {
             sendToConsole("Сервер запущен: " + command);
 
             if (telegramBotService != null) {
-                boolean sent = telegramBotService.sendServerStartingNotification();
-                return ResponseEntity.ok(sent ? "Server started with Telegram notification"
-                        : "Server started but Telegram notification failed");
+                boolean queued = telegramBotService.sendServerStartingNotification();
+                return ResponseEntity.ok(queued ? "Server started, Telegram notification queued"
+                        : "Server started but Telegram is not configured or its notification queue overflowed");
             }
             return ResponseEntity.ok("Server started without Telegram notification");
         } catch (IOException e) {
@@ -117,38 +149,33 @@ public class ServerController {
         }
     }
 
+    // Без refresh отдаются последние разобранные значения; с refresh=true сервер опрашивается командами list и tps
     @GetMapping("/stats")
-    public ServerStats getStats() {
-        sendStatsToTelegram();
-        return serverService.getStats();
+    public CompletableFuture<ServerStats> getStats(@RequestParam(defaultValue = "false") boolean refresh) {
+        if (!refresh || !serverService.isServerRunning()) {
+            return CompletableFuture.completedFuture(serverService.getStats());
+        }
+        return serverService.requestStats();
     }
 
     @PostMapping("/send-stats")
-    public ResponseEntity<String> sendStatsToTelegram() {
+    public CompletableFuture<ResponseEntity<String>> sendStatsToTelegram() {
         if (!serverService.isServerRunning()) {
-            return ResponseEntity.badRequest().body("Сервер не запущен");
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Сервер не запущен"));
         }
 
-        try {
-            requestStats();
-            Thread.sleep(5000);
-            ServerStats stats = serverService.getStats();
-            boolean sent = telegramBotService.sendServerStats(stats);
-            if (sent) {
-                return ResponseEntity.ok("Статистика отправлена в Telegram");
-            } else {
-                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                        .body("Ошибка отправки статистики");
-            }
-        } catch (IOException | InterruptedException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("Ошибка: " + e.getMessage());
-        }
-    }
-
-    private void requestStats() throws IOException {
-        serverService.sendCommand("list");
-        serverService.sendCommand("tps");
+        return serverService.requestStats()
+                .thenApply(stats -> {
+                    // Отправка асинхронная: true означает только, что статистика встала в очередь без потерь
+                    boolean queued = telegramBotService.sendServerStats(stats);
+                    if (queued) {
+                        return ResponseEntity.ok("Статистика поставлена в очередь отправки в Telegram");
+                    }
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                            .body("Telegram не настроен или очередь уведомлений переполнена");
+                })
+                .exceptionally(e -> ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body("Ошибка: " + e.getMessage()));
     }
 
     @GetMapping("/telegram/settings")
@@ -201,7 +228,7 @@ public class ServerController {
     @PostMapping("/clear")
     public void clearConsole() {
         consoleLogService.clearLogs();
-        messagingTemplate.convertAndSend("/topic/console", "clear");
+        consoleBroadcastService.clear();
     }
 
     @PostMapping("/settings")
@@ -320,6 +347,39 @@ public class ServerController {
                         .body("Error restoring backup: " + e.getMessage()));
     }
 
+    @GetMapping("/backup/entries")
+    public ResponseEntity<List<BackupEntry>> listBackupEntries(
+            @RequestParam String backupName,
+            @RequestParam String type,
+            @RequestParam(required = false) String prefix) {
+        try {
+            return ResponseEntity.ok(backupService.listBackupEntries(backupName, type, prefix));
+        } catch (FileNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PostMapping("/backup/restore-entries")
+    public CompletableFuture<ResponseEntity<String>> restoreBackupEntries(
+            @RequestParam String backupName,
+            @RequestParam String type,
+            @RequestBody List<String> paths) {
+        return backupService.restoreBackupEntries(backupName, type, paths)
+                .thenApply(count -> ResponseEntity.ok("Restored " + count + " files from backup"))
+                .exceptionally(e -> ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body("Error restoring backup entries: " + e.getMessage()));
+    }
+
+    @PostMapping("/backup/rollback")
+    public CompletableFuture<ResponseEntity<String>> rollbackRestore() {
+        return backupService.rollbackRestore()
+                .thenApply(v -> ResponseEntity.ok("Backup restore rolled back successfully"))
+                .exceptionally(e -> ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body("Error rolling back restore: " + e.getMessage()));
+    }
+
     @DeleteMapping("/backup/delete")
     public ResponseEntity<String> deleteBackup(
             @RequestParam String backupName,
@@ -391,12 +451,150 @@ public class ServerController {
     }
 
     @GetMapping("/logs")
-    public ResponseEntity<List<String>> getConsoleLogs() {
-        return ResponseEntity.ok(consoleLogService.getLogs());
+    public ResponseEntity<List<ConsoleLine>> getConsoleLogs(
+            @RequestParam(required = false) Long since,
+            @RequestParam(defaultValue = "1000") int limit) {
+        if (since == null) {
+            return ResponseEntity.ok(consoleLogService.getTail(limit));
+        }
+        return ResponseEntity.ok(consoleLogService.getLogs(since, limit));
+    }
+
+    // Журнал на диске: строки за любой период, постранично через since = seq последней полученной строки
+    @GetMapping("/logs/journal")
+    public ResponseEntity<?> getJournalLogs(
+            @RequestParam(defaultValue = "0") long since,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "1000") int limit) {
+        if (!consoleJournalService.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Console journal is disabled");
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_JOURNAL_PAGE));
+        long fromTime = from != null ? from.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0;
+        long toTime = to != null ? to.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : Long.MAX_VALUE;
+        try {
+            List<ConsoleLine> lines = consoleJournalService.read(since, fromTime, toTime, pageSize);
+            return ResponseEntity.ok(new ConsoleHistoryPage(lines, consoleJournalService.getLastSequence(), lines.size() == pageSize));
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to read console journal: " + e.getMessage());
+        }
+    }
+
+    // Поиск по индексу: все слова из q, фильтры по уровню, логгеру/плагину и времени; страницы от новых к старым
+    @GetMapping("/logs/search")
+    public ResponseEntity<?> searchLogs(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String level,
+            @RequestParam(required = false) String logger,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "" + Long.MAX_VALUE) long before,
+            @RequestParam(defaultValue = "100") int limit) {
+        if (!consoleSearchService.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Console search is disabled");
+        }
+        long started = System.nanoTime();
+        int pageSize = Math.max(1, Math.min(limit, MAX_SEARCH_PAGE));
+        long fromTime = from != null ? from.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0;
+        long toTime = to != null ? to.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : Long.MAX_VALUE;
+        try {
+            ConsoleSearchService.SearchResult result = consoleSearchService.search(q, level, logger, fromTime, toTime, before, pageSize);
+            List<ConsoleLine> lines = consoleLogService.getLines(result.seqs());
+            long nextBefore = result.seqs().length > 0 ? result.seqs()[result.seqs().length - 1] : before;
+            return ResponseEntity.ok(new ConsoleSearchPage(lines, nextBefore, result.hasMore(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to read console journal: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/console/sessions")
+    public ResponseEntity<List<ConsoleSessionStats>> getConsoleSessions() {
+        return ResponseEntity.ok(consoleSessionMonitor.getSessionStats());
+    }
+
+    // Квантили с точностью до корзины гистограммы (степени двойки от 1 мкс)
+    @GetMapping("/console/latency")
+    public ResponseEntity<List<LatencyStats>> getConsoleLatency() {
+        return ResponseEntity.ok(pipelineMetrics.snapshot().entrySet().stream()
+                .map(entry -> {
+                    LatencyHistogram.Snapshot snapshot = entry.getValue();
+                    return new LatencyStats(entry.getKey(), snapshot.count(),
+                            snapshot.meanNanos() / 1e6,
+                            snapshot.quantileNanos(0.5) / 1e6,
+                            snapshot.quantileNanos(0.99) / 1e6,
+                            snapshot.maxNanos() / 1e6);
+                })
+                .toList());
+    }
+
+    @GetMapping("/metrics/history")
+    public ResponseEntity<?> getMetricHistory(
+            @RequestParam String metric,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "auto") String resolution) {
+        long fromTime = from != null ? from.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0;
+        long toTime = to != null ? to.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : Long.MAX_VALUE;
+        TimeSeries.Resolution selected;
+        try {
+            selected = "auto".equalsIgnoreCase(resolution)
+                    ? timeSeriesService.resolve(metric, fromTime)
+                    : TimeSeries.Resolution.fromId(resolution);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        TimeSeries.Range range = timeSeriesService.query(metric, selected, fromTime, toTime);
+        if (range == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Unknown metric: " + metric);
+        }
+        return ResponseEntity.ok(new TimeSeriesRange(metric, selected.id(), range.timestamps(), range.values()));
+    }
+
+    @GetMapping("/metrics/names")
+    public ResponseEntity<List<String>> getMetricNames() {
+        return ResponseEntity.ok(timeSeriesService.getMetricNames());
+    }
+
+    @GetMapping("/players")
+    public ResponseEntity<List<PlayerSummary>> getPlayers() {
+        return ResponseEntity.ok(playerActivityService.getPlayers());
+    }
+
+    @GetMapping("/players/{name}")
+    public ResponseEntity<?> getPlayer(@PathVariable String name) {
+        PlayerSummary player = playerActivityService.getPlayer(name);
+        if (player == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Unknown player: " + name);
+        }
+        return ResponseEntity.ok(player);
+    }
+
+    @GetMapping("/players/activity")
+    public ResponseEntity<?> getPlayerActivity(
+            @RequestParam(defaultValue = "peak-hourly") String type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        long fromTime = from != null ? from.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0;
+        long toTime = to != null ? to.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : System.currentTimeMillis();
+        List<PlayerActivityPoint> points = switch (type) {
+            case "peak-hourly" -> playerActivityService.getHourlyPeaks(fromTime, toTime);
+            case "peak-daily" -> playerActivityService.getDailyPeaks(fromTime, toTime);
+            case "unique-daily" -> playerActivityService.getDailyUniquePlayers(fromTime, toTime);
+            default -> null;
+        };
+        if (points == null) {
+            return ResponseEntity.badRequest().body("Unknown activity type: " + type);
+        }
+        return ResponseEntity.ok(points);
     }
 
     private void sendToConsole(String message) {
-        consoleLogService.addLog(message);
-        messagingTemplate.convertAndSend("/topic/console", message);
+        serverService.sendToConsole(message);
     }
 }
\ No newline at end of file
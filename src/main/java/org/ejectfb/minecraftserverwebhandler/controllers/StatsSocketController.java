@@ -0,0 +1,22 @@
+package org.ejectfb.minecraftserverwebhandler.controllers;
+
+import org.ejectfb.minecraftserverwebhandler.services.StatsBroadcastService;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.stereotype.Controller;
+
+import java.util.Map;
+
+@Controller
+public class StatsSocketController {
+    private final StatsBroadcastService statsBroadcastService;
+
+    public StatsSocketController(StatsBroadcastService statsBroadcastService) {
+        this.statsBroadcastService = statsBroadcastService;
+    }
+
+    // Полный снимок только подписавшейся сессии; дальше она получает изменения из /topic/stats
+    @SubscribeMapping("/stats")
+    public Map<String, Object> snapshot() {
+        return statsBroadcastService.getSnapshot();
+    }
+}
@@ -0,0 +1,5 @@
+package org.ejectfb.minecraftserverwebhandler.dto;
+
+// Файл или папка внутри бэкапа; у папки size и files - сумма по всему содержимому
+public record BackupEntry(String name, String path, boolean directory, long size, int files, long modified) {
+}
@@ -0,0 +1,6 @@
+package org.ejectfb.minecraftserverwebhandler.dto;
+
+import java.util.List;
+
+public record ConsoleHistoryPage(List<ConsoleLine> lines, long headSeq, boolean hasMore) {
+}
@@ -0,0 +1,22 @@
+package org.ejectfb.minecraftserverwebhandler.dto;
+
+import org.ejectfb.minecraftserverwebhandler.parsing.ConsoleLineHeader;
+
+// Строка консоли разбирается один раз при получении; text[messageOffset..] - само сообщение без заголовка
+public record ConsoleLine(long seq, long timestamp, String thread, String level, String logger,
+                          int messageOffset, String text) {
+
+    // Заголовок разбирается прямо по представлению строки; String создаётся один раз - тот, что хранит история
+    public static ConsoleLine parse(long seq, long receivedAt, CharSequence text) {
+        ConsoleLineHeader header = ConsoleLineHeader.parse(text);
+        return new ConsoleLine(seq, header.timestamp(receivedAt), header.thread(), header.level(),
+                header.logger(), header.messageOffset(), text.toString());
+    }
+
+    // Для строк из журнала: время уже вычислено при записи
+    public static ConsoleLine restore(long seq, long timestamp, String text) {
+        ConsoleLineHeader header = ConsoleLineHeader.parse(text);
+        return new ConsoleLine(seq, timestamp, header.thread(), header.level(),
+                header.logger(), header.messageOffset(), text);
+    }
+}
@@ -0,0 +1,7 @@
+package org.ejectfb.minecraftserverwebhandler.dto;
+
+import java.util.List;
+
+// Ответ на подписку истории: pageSize и replayLimit - настройки сервера, по которым клиент догружает остаток через REST
+public record ConsoleReplayPage(List<ConsoleLine> lines, long headSeq, boolean hasMore, int pageSize, int replayLimit) {
+}
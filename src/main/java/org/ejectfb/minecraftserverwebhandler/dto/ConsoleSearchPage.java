@@ -0,0 +1,6 @@
+package org.ejectfb.minecraftserverwebhandler.dto;
+
+import java.util.List;
+
+public record ConsoleSearchPage(List<ConsoleLine> lines, long nextBefore, boolean hasMore, long tookMs) {
+}
@@ -0,0 +1,5 @@
+package org.ejectfb.minecraftserverwebhandler.dto;
+
+public record ConsoleSessionStats(String sessionId, int pendingFrames, long sentFrames,
+                                  long droppedFrames, long droppedLines) {
+}
@@ -0,0 +1,4 @@
+package org.ejectfb.minecraftserverwebhandler.dto;
+
+public record LatencyStats(String stage, long count, double meanMs, double p50Ms, double p99Ms, double maxMs) {
+}
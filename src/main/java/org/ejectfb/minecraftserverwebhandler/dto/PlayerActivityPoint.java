@@ -0,0 +1,5 @@
+package org.ejectfb.minecraftserverwebhandler.dto;
+
+// Начало часа или дня и значение за этот интервал
+public record PlayerActivityPoint(long timestamp, int value) {
+}
@@ -0,0 +1,5 @@
+package org.ejectfb.minecraftserverwebhandler.dto;
+
+public record PlayerSummary(String name, long totalPlaytimeMs, int sessions, long firstSeen, long lastSeen,
+                            boolean online) {
+}
@@ -0,0 +1,7 @@
+package org.ejectfb.minecraftserverwebhandler.dto;
+
+// null - значение ещё не посчитано (нужен второй замер) или недоступно
+public record ProcessStats(long pid, long timestamp, Double cpuPercent, Long rssBytes, Integer threads,
+                           Double contextSwitchesPerSecond, Double diskReadBytesPerSecond,
+                           Double diskWriteBytesPerSecond) {
+}
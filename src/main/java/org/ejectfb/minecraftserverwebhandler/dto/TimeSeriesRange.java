@@ -0,0 +1,4 @@
+package org.ejectfb.minecraftserverwebhandler.dto;
+
+public record TimeSeriesRange(String metric, String resolution, long[] timestamps, double[] values) {
+}
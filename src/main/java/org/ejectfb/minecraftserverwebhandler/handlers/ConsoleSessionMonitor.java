@@ -0,0 +1,210 @@
+package org.ejectfb.minecraftserverwebhandler.handlers;
+
+import org.ejectfb.minecraftserverwebhandler.config.ServerProperties;
+import org.ejectfb.minecraftserverwebhandler.dto.ConsoleSessionStats;
+import org.ejectfb.minecraftserverwebhandler.metrics.ConsolePipelineMetrics;
+import org.ejectfb.minecraftserverwebhandler.services.ConsoleBroadcastService;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Кадры консоли, которые сессия ещё не отправила в сокет, считаются на входе в clientOutboundChannel
+// и на выходе из сессии. Если очередь медленного клиента полна - новые кадры выбрасываются,
+// а в первый прошедший кадр добавляется отметка {"skipped": N} вместо разрыва соединения.
+@Component
+public class ConsoleSessionMonitor implements ChannelInterceptor, WebSocketHandlerDecoratorFactory {
+    private static final String CONSOLE_FRAME_PREFIX = "MESSAGE\n";
+    private static final String CONSOLE_DESTINATION = "\ndestination:" + ConsoleBroadcastService.CONSOLE_TOPIC + "\n";
+
+    private final ServerProperties serverProperties;
+    private final ConsolePipelineMetrics pipelineMetrics;
+    private final Map<String, SessionState> sessions = new ConcurrentHashMap<>();
+    // Итоги по всем сессиям, включая закрытые
+    private final AtomicLong totalSentFrames = new AtomicLong();
+    private final AtomicLong totalDroppedFrames = new AtomicLong();
+    private final AtomicLong totalDroppedLines = new AtomicLong();
+
+    public ConsoleSessionMonitor(ServerProperties serverProperties, ConsolePipelineMetrics pipelineMetrics) {
+        this.serverProperties = serverProperties;
+        this.pipelineMetrics = pipelineMetrics;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        if (headers.get(SimpMessageHeaderAccessor.MESSAGE_TYPE_HEADER) != SimpMessageType.MESSAGE
+                || !ConsoleBroadcastService.CONSOLE_TOPIC.equals(headers.get(SimpMessageHeaderAccessor.DESTINATION_HEADER))) {
+            return message;
+        }
+        SessionState state = sessions.get((String) headers.get(SimpMessageHeaderAccessor.SESSION_ID_HEADER));
+        if (state == null) {
+            return message;
+        }
+
+        int lines = lineCount(headers);
+        int size = message.getPayload() instanceof byte[] bytes ? bytes.length : 0;
+        // Служебные кадры (clear) не выбрасываются никогда
+        if (lines > 0 && isLagging(state)) {
+            state.droppedFrames.incrementAndGet();
+            state.droppedLines.addAndGet(lines);
+            totalDroppedFrames.incrementAndGet();
+            totalDroppedLines.addAndGet(lines);
+            state.skippedLines.addAndGet(lines);
+            return null;
+        }
+
+        state.pending.incrementAndGet();
+        state.pendingBytes.addAndGet(size);
+        state.pendingFrames.add(new PendingFrame(size, System.nanoTime()));
+        long skipped = lines > 0 ? state.skippedLines.getAndSet(0) : 0;
+        if (skipped > 0 && message.getPayload() instanceof byte[] payload && payload.length > 1 && payload[0] == '[') {
+            byte[] marker = ("[{\"skipped\":" + skipped + "},").getBytes(StandardCharsets.UTF_8);
+            byte[] marked = new byte[marker.length + payload.length - 1];
+            System.arraycopy(marker, 0, marked, 0, marker.length);
+            System.arraycopy(payload, 1, marked, marker.length, payload.length - 1);
+            return MessageBuilder.createMessage(marked, headers);
+        }
+        return message;
+    }
+
+    // Половина буфера сессии остаётся под служебные кадры, чтобы ConcurrentWebSocketSessionDecorator не разорвал соединение
+    private boolean isLagging(SessionState state) {
+        long maxBytes = Math.max(64, serverProperties.getConsole().getSendBufferSizeKb()) * 1024L / 2;
+        return state.pending.get() >= Math.max(1, serverProperties.getConsole().getMaxPendingFrames())
+                || state.pendingBytes.get() >= maxBytes;
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                SessionState state = new SessionState();
+                sessions.put(session.getId(), state);
+                super.afterConnectionEstablished(new CountingSession(session, state, ConsoleSessionMonitor.this));
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                sessions.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    public List<ConsoleSessionStats> getSessionStats() {
+        return sessions.entrySet().stream()
+                .map(entry -> new ConsoleSessionStats(entry.getKey(),
+                        entry.getValue().pending.get(),
+                        entry.getValue().sentFrames.get(),
+                        entry.getValue().droppedFrames.get(),
+                        entry.getValue().droppedLines.get()))
+                .toList();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public long getTotalSentFrames() {
+        return totalSentFrames.get();
+    }
+
+    public long getTotalDroppedFrames() {
+        return totalDroppedFrames.get();
+    }
+
+    public long getTotalDroppedLines() {
+        return totalDroppedLines.get();
+    }
+
+    private static int lineCount(MessageHeaders headers) {
+        Object nativeHeaders = headers.get(SimpMessageHeaderAccessor.NATIVE_HEADERS);
+        if (nativeHeaders instanceof Map<?, ?> map && map.get(ConsoleBroadcastService.LINES_HEADER) instanceof List<?> values
+                && !values.isEmpty()) {
+            try {
+                return Integer.parseInt(String.valueOf(values.get(0)));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private static final class SessionState {
+        final AtomicInteger pending = new AtomicInteger();
+        final AtomicLong pendingBytes = new AtomicLong();
+        // Кадры в порядке постановки; отправка идёт в том же порядке
+        final Queue<PendingFrame> pendingFrames = new ConcurrentLinkedQueue<>();
+        final AtomicLong sentFrames = new AtomicLong();
+        final AtomicLong droppedFrames = new AtomicLong();
+        final AtomicLong droppedLines = new AtomicLong();
+        final AtomicLong skippedLines = new AtomicLong();
+    }
+
+    private record PendingFrame(int size, long enqueuedNanos) {
+    }
+
+    // Самый нижний уровень под ConcurrentWebSocketSessionDecorator: сюда кадр попадает, когда реально уходит в сокет
+    private static final class CountingSession extends WebSocketSessionDecorator {
+        private final SessionState state;
+        private final ConsoleSessionMonitor monitor;
+
+        CountingSession(WebSocketSession session, SessionState state, ConsoleSessionMonitor monitor) {
+            super(session);
+            this.state = state;
+            this.monitor = monitor;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            try {
+                super.sendMessage(message);
+            } finally {
+                if (message instanceof TextMessage text && isConsoleFrame(text.getPayload())) {
+                    state.pending.decrementAndGet();
+                    PendingFrame frame = state.pendingFrames.poll();
+                    if (frame != null) {
+                        state.pendingBytes.addAndGet(-frame.size());
+                        // Время от передачи кадра брокеру до окончания записи в сокет
+                        monitor.pipelineMetrics.socket().record(System.nanoTime() - frame.enqueuedNanos());
+                    }
+                    state.sentFrames.incrementAndGet();
+                    monitor.totalSentFrames.incrementAndGet();
+                }
+            }
+        }
+
+        private static boolean isConsoleFrame(String frame) {
+            if (!frame.startsWith(CONSOLE_FRAME_PREFIX)) {
+                return false;
+            }
+            int headersEnd = frame.indexOf("\n\n");
+            int destination = frame.indexOf(CONSOLE_DESTINATION);
+            return destination > 0 && (headersEnd < 0 || destination < headersEnd);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.ejectfb.minecraftserverwebhandler.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Задержки этапов handleServerOutput и рассылки консоли
+@Component
+public class ConsolePipelineMetrics {
+    // От возврата read() из stdout до начала обработки строки: декодирование и разбиение на строки
+    private final LatencyHistogram read = new LatencyHistogram();
+    // ConsoleLogService.addLog: разбор заголовка, очередь журнала и поиска, кольцевой буфер
+    private final LatencyHistogram append = new LatencyHistogram();
+    // ConsoleBroadcastService.publish: постановка строки в буфер рассылки
+    private final LatencyHistogram publish = new LatencyHistogram();
+    // ServerDataService.parseConsoleLine: классификация строки и обработка события
+    private final LatencyHistogram classify = new LatencyHistogram();
+    // SimpMessagingTemplate.convertAndSend одного кадра консоли
+    private final LatencyHistogram send = new LatencyHistogram();
+    // Ожидание кадра в очереди сессии до записи в сокет
+    private final LatencyHistogram socket = new LatencyHistogram();
+    // От чтения строки из stdout до передачи её кадра брокеру
+    private final LatencyHistogram endToEnd = new LatencyHistogram();
+
+    public LatencyHistogram read() {
+        return read;
+    }
+
+    public LatencyHistogram append() {
+        return append;
+    }
+
+    public LatencyHistogram publish() {
+        return publish;
+    }
+
+    public LatencyHistogram classify() {
+        return classify;
+    }
+
+    public LatencyHistogram send() {
+        return send;
+    }
+
+    public LatencyHistogram socket() {
+        return socket;
+    }
+
+    public LatencyHistogram endToEnd() {
+        return endToEnd;
+    }
+
+    public Map<String, LatencyHistogram.Snapshot> snapshot() {
+        Map<String, LatencyHistogram.Snapshot> stages = new LinkedHashMap<>();
+        stages.put("read", read.snapshot());
+        stages.put("append", append.snapshot());
+        stages.put("publish", publish.snapshot());
+        stages.put("classify", classify.snapshot());
+        stages.put("send", send.snapshot());
+        stages.put("socket", socket.snapshot());
+        stages.put("end_to_end", endToEnd.snapshot());
+        return stages;
+    }
+}
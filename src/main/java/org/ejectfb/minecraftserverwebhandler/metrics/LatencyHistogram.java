@@ -0,0 +1,71 @@
+package org.ejectfb.minecraftserverwebhandler.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Гистограмма с фиксированными корзинами: верхние границы 1 мкс * 2^i, от 1 мкс до ~36 минут, и корзина переполнения.
+// Запись - несколько атомарных инкрементов без выделения памяти; квантили считаются с точностью до корзины.
+public final class LatencyHistogram {
+    public static final int BUCKETS = 32;
+    private static final long FIRST_BOUND_NANOS = 1_000;
+
+    public record Snapshot(long count, long sumNanos, long maxNanos, long[] counts) {
+        // Верхняя граница корзины, в которую попал квантиль, но не больше наблюдавшегося максимума
+        public long quantileNanos(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                if (cumulative >= rank) {
+                    return Math.min(upperBoundNanos(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+        public double meanNanos() {
+            return count == 0 ? 0 : (double) sumNanos / count;
+        }
+    }
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS + 1);
+    private final AtomicLong sumNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(bucket(nanos));
+        sumNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+            // повторяем, пока другой поток не записал больший максимум
+        }
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[counts.length()];
+        long count = 0;
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(count, sumNanos.get(), maxNanos.get(), copy);
+    }
+
+    // Long.MAX_VALUE для корзины переполнения
+    public static long upperBoundNanos(int bucket) {
+        return bucket >= BUCKETS ? Long.MAX_VALUE : FIRST_BOUND_NANOS << bucket;
+    }
+
+    static int bucket(long nanos) {
+        if (nanos <= FIRST_BOUND_NANOS) {
+            return 0;
+        }
+        return Math.min(BUCKETS, 64 - Long.numberOfLeadingZeros((nanos - 1) / FIRST_BOUND_NANOS));
+    }
+}
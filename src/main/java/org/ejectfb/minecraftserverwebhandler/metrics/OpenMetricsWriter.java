@@ -0,0 +1,71 @@
+package org.ejectfb.minecraftserverwebhandler.metrics;
+
+import java.util.Map;
+
+// Текстовый формат OpenMetrics 1.0: https://github.com/OpenObservability/OpenMetrics
+public final class OpenMetricsWriter {
+    public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private final StringBuilder out = new StringBuilder(4096);
+
+    public OpenMetricsWriter gauge(String name, String help, double value) {
+        header(name, "gauge", help);
+        sample(name, value);
+        return this;
+    }
+
+    public OpenMetricsWriter counter(String name, String help, double value) {
+        header(name, "counter", help);
+        sample(name + "_total", value);
+        return this;
+    }
+
+    // Сводка без квантилей: только число наблюдений и их сумма
+    public OpenMetricsWriter summary(String name, String help, long count, double sum) {
+        header(name, "summary", help);
+        sample(name + "_count", count);
+        sample(name + "_sum", sum);
+        return this;
+    }
+
+    // Гистограмма задержек в секундах, по одной серии на значение метки
+    public OpenMetricsWriter histogram(String name, String help, String label, Map<String, LatencyHistogram.Snapshot> series) {
+        header(name, "histogram", help);
+        for (Map.Entry<String, LatencyHistogram.Snapshot> entry : series.entrySet()) {
+            String labels = label + "=\"" + entry.getKey() + "\"";
+            LatencyHistogram.Snapshot snapshot = entry.getValue();
+            long[] counts = snapshot.counts();
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                long bound = LatencyHistogram.upperBoundNanos(i);
+                String le = bound == Long.MAX_VALUE ? "+Inf" : Double.toString(bound / 1e9);
+                sample(name + "_bucket{" + labels + ",le=\"" + le + "\"}", cumulative);
+            }
+            sample(name + "_count{" + labels + "}", snapshot.count());
+            sample(name + "_sum{" + labels + "}", snapshot.sumNanos() / 1e9);
+        }
+        return this;
+    }
+
+    public String finish() {
+        return out.append("# EOF\n").toString();
+    }
+
+    private void header(String name, String type, String help) {
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    }
+
+    private void sample(String name, double value) {
+        out.append(name).append(' ');
+        if (Double.isNaN(value)) {
+            out.append("NaN");
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+}
@@ -0,0 +1,283 @@
+package org.ejectfb.minecraftserverwebhandler.metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Показатели процесса из /proc/<pid>. Файлы открываются один раз и перечитываются с нулевого смещения
+// в один и тот же буфер, так что обычный замер ничего не выделяет. Список потоков перечитывается,
+// только когда меняется их число или поток исчез.
+public final class ProcSampler implements Closeable {
+    // USER_HZ; на Linux для x86 и arm64 всегда 100
+    private static final double CLOCK_TICKS_PER_SECOND = 100;
+    private static final int TASK_REFRESH_SAMPLES = 60;
+    private static final byte[] VM_RSS = "VmRSS:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] THREADS = "Threads:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VOLUNTARY = "voluntary_ctxt_switches:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NONVOLUNTARY = "nonvoluntary_ctxt_switches:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] READ_BYTES = "read_bytes:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] WRITE_BYTES = "write_bytes:".getBytes(StandardCharsets.US_ASCII);
+
+    private final long pid;
+    private final Path procDir;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(8192);
+    private final FileChannel stat;
+    private final FileChannel status;
+    private final FileChannel io;
+    private FileChannel[] taskStatus = new FileChannel[0];
+    private int samplesSinceTaskRefresh;
+
+    private long lastNanos = -1;
+    private long lastCpuTicks;
+    // -1 - опорного значения ещё нет; обновляется только удачным замером вместе со своим временем
+    private long lastContextSwitches = -1;
+    private long lastContextSwitchesNanos;
+    private long lastReadBytes;
+    private long lastWriteBytes;
+
+    private double cpuPercent = Double.NaN;
+    private long rssBytes = -1;
+    private int threads = -1;
+    private double contextSwitchesPerSecond = Double.NaN;
+    private double readBytesPerSecond = Double.NaN;
+    private double writeBytesPerSecond = Double.NaN;
+
+    public ProcSampler(long pid) throws IOException {
+        this.pid = pid;
+        this.procDir = Paths.get("/proc", Long.toString(pid));
+        this.stat = FileChannel.open(procDir.resolve("stat"), StandardOpenOption.READ);
+        this.status = FileChannel.open(procDir.resolve("status"), StandardOpenOption.READ);
+        // io доступен не всегда (другой пользователь, старое ядро) - тогда скорость диска не считается
+        FileChannel ioChannel;
+        try {
+            ioChannel = FileChannel.open(procDir.resolve("io"), StandardOpenOption.READ);
+        } catch (IOException e) {
+            ioChannel = null;
+        }
+        this.io = ioChannel;
+    }
+
+    public static boolean isSupported() {
+        return Files.isReadable(Paths.get("/proc/self/stat"));
+    }
+
+    public long pid() {
+        return pid;
+    }
+
+    // false - процесс завершился
+    public boolean sample() {
+        long now = System.nanoTime();
+        try {
+            read(stat);
+            long cpuTicks = statCpuTicks();
+
+            read(status);
+            long rssKb = value(VM_RSS);
+            rssBytes = rssKb < 0 ? -1 : rssKb * 1024;
+            threads = (int) value(THREADS);
+
+            long contextSwitches = contextSwitches();
+
+            long readBytes = -1;
+            long writeBytes = -1;
+            if (io != null) {
+                read(io);
+                readBytes = value(READ_BYTES);
+                writeBytes = value(WRITE_BYTES);
+            }
+
+            if (lastNanos >= 0) {
+                double seconds = (now - lastNanos) / 1e9;
+                cpuPercent = (cpuTicks - lastCpuTicks) / CLOCK_TICKS_PER_SECOND / seconds * 100;
+                readBytesPerSecond = readBytes < 0 ? Double.NaN : (readBytes - lastReadBytes) / seconds;
+                writeBytesPerSecond = writeBytes < 0 ? Double.NaN : (writeBytes - lastWriteBytes) / seconds;
+            }
+            // Неудачный замер не сдвигает опорное значение, иначе следующий дал бы всё число переключений за жизнь процесса
+            if (contextSwitches < 0) {
+                contextSwitchesPerSecond = Double.NaN;
+            } else {
+                if (lastContextSwitches >= 0) {
+                    contextSwitchesPerSecond = Math.max(0, contextSwitches - lastContextSwitches)
+                            / ((now - lastContextSwitchesNanos) / 1e9);
+                }
+                lastContextSwitches = contextSwitches;
+                lastContextSwitchesNanos = now;
+            }
+            lastNanos = now;
+            lastCpuTicks = cpuTicks;
+            lastReadBytes = readBytes;
+            lastWriteBytes = writeBytes;
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public double cpuPercent() {
+        return cpuPercent;
+    }
+
+    public long rssBytes() {
+        return rssBytes;
+    }
+
+    public int threads() {
+        return threads;
+    }
+
+    public double contextSwitchesPerSecond() {
+        return contextSwitchesPerSecond;
+    }
+
+    public double readBytesPerSecond() {
+        return readBytesPerSecond;
+    }
+
+    public double writeBytesPerSecond() {
+        return writeBytesPerSecond;
+    }
+
+    @Override
+    public void close() {
+        closeQuietly(stat);
+        closeQuietly(status);
+        closeQuietly(io);
+        closeTasks();
+    }
+
+    // Сумма переключений контекста по всем потокам; status процесса содержит только главный поток
+    private long contextSwitches() {
+        if (taskStatus.length != threads || ++samplesSinceTaskRefresh >= TASK_REFRESH_SAMPLES) {
+            refreshTasks();
+        }
+        long total = 0;
+        for (FileChannel channel : taskStatus) {
+            try {
+                read(channel);
+                total += value(VOLUNTARY) + value(NONVOLUNTARY);
+            } catch (IOException e) {
+                // Поток завершился - список перечитается на следующем замере, а это значение пропускаем
+                samplesSinceTaskRefresh = TASK_REFRESH_SAMPLES;
+                return -1;
+            }
+        }
+        return total;
+    }
+
+    private void refreshTasks() {
+        closeTasks();
+        samplesSinceTaskRefresh = 0;
+        List<FileChannel> channels = new ArrayList<>();
+        try (DirectoryStream<Path> tasks = Files.newDirectoryStream(procDir.resolve("task"))) {
+            for (Path task : tasks) {
+                try {
+                    channels.add(FileChannel.open(task.resolve("status"), StandardOpenOption.READ));
+                } catch (IOException e) {
+                    // поток успел завершиться
+                }
+            }
+        } catch (IOException e) {
+            // процесс завершился - заметим на чтении stat
+        }
+        taskStatus = channels.toArray(new FileChannel[0]);
+    }
+
+    private void closeTasks() {
+        for (FileChannel channel : taskStatus) {
+            closeQuietly(channel);
+        }
+        taskStatus = new FileChannel[0];
+    }
+
+    private void read(FileChannel channel) throws IOException {
+        buffer.clear();
+        int read;
+        while (buffer.hasRemaining() && (read = channel.read(buffer, buffer.position())) > 0) {
+            buffer.position(buffer.position() + read);
+        }
+        buffer.flip();
+        if (buffer.limit() == 0) {
+            throw new IOException("Empty read from /proc/" + pid);
+        }
+    }
+
+    // utime + stime: 14 и 15 поля; имя процесса во втором поле в скобках и может содержать пробелы
+    private long statCpuTicks() {
+        int position = buffer.limit() - 1;
+        while (position > 0 && buffer.get(position) != ')') {
+            position--;
+        }
+        int field = 2;
+        long utime = 0;
+        for (int i = position + 1; i < buffer.limit(); i++) {
+            if (buffer.get(i) != ' ') {
+                continue;
+            }
+            field++;
+            if (field == 14) {
+                utime = number(i + 1);
+            } else if (field == 15) {
+                return utime + number(i + 1);
+            }
+        }
+        return utime;
+    }
+
+    // Число после "ключ:" в начале строки, -1 если ключа нет
+    private long value(byte[] key) {
+        int limit = buffer.limit() - key.length;
+        for (int line = 0; line <= limit; ) {
+            if (startsWith(line, key)) {
+                return number(line + key.length);
+            }
+            while (line < buffer.limit() && buffer.get(line) != '\n') {
+                line++;
+            }
+            line++;
+        }
+        return -1;
+    }
+
+    private boolean startsWith(int position, byte[] key) {
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(position + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long number(int position) {
+        while (position < buffer.limit() && (buffer.get(position) == ' ' || buffer.get(position) == '\t')) {
+            position++;
+        }
+        long value = 0;
+        byte b;
+        while (position < buffer.limit() && (b = buffer.get(position)) >= '0' && b <= '9') {
+            value = value * 10 + (b - '0');
+            position++;
+        }
+        return value;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // нечего делать
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package org.ejectfb.minecraftserverwebhandler.metrics;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Одна метрика в трёх разрешениях: сырые точки и средние за минуту и за час, каждое в своём кольце примитивов
+public final class TimeSeries {
+
+    public enum Resolution {
+        RAW("raw", 0),
+        MINUTE("1m", 60_000L),
+        HOUR("1h", 3_600_000L);
+
+        private final String id;
+        private final long bucketMs;
+
+        Resolution(String id, long bucketMs) {
+            this.id = id;
+            this.bucketMs = bucketMs;
+        }
+
+        public String id() {
+            return id;
+        }
+
+        public static Resolution fromId(String id) {
+            for (Resolution resolution : values()) {
+                if (resolution.id.equalsIgnoreCase(id) || resolution.name().equalsIgnoreCase(id)) {
+                    return resolution;
+                }
+            }
+            throw new IllegalArgumentException("Unknown resolution: " + id);
+        }
+    }
+
+    public record Range(long[] timestamps, double[] values) {
+    }
+
+    private final Ring[] rings = new Ring[Resolution.values().length];
+
+    public TimeSeries(int rawCapacity, int minuteCapacity, int hourCapacity) {
+        rings[Resolution.RAW.ordinal()] = new Ring(rawCapacity, Resolution.RAW.bucketMs);
+        rings[Resolution.MINUTE.ordinal()] = new Ring(minuteCapacity, Resolution.MINUTE.bucketMs);
+        rings[Resolution.HOUR.ordinal()] = new Ring(hourCapacity, Resolution.HOUR.bucketMs);
+    }
+
+    public synchronized void record(long timestamp, double value) {
+        for (Ring ring : rings) {
+            ring.record(timestamp, value);
+        }
+    }
+
+    public synchronized Range query(Resolution resolution, long from, long to) {
+        return rings[resolution.ordinal()].query(from, to);
+    }
+
+    public synchronized double last() {
+        return rings[Resolution.RAW.ordinal()].last();
+    }
+
+    // Самое подробное разрешение, которое ещё хранит точки начиная с from
+    public synchronized Resolution finestCovering(long from) {
+        for (Resolution resolution : Resolution.values()) {
+            Ring ring = rings[resolution.ordinal()];
+            if (ring.count < ring.capacity() || ring.oldest() <= from) {
+                return resolution;
+            }
+        }
+        return Resolution.HOUR;
+    }
+
+    public synchronized void write(DataOutputStream out) throws IOException {
+        for (Ring ring : rings) {
+            ring.write(out);
+        }
+    }
+
+    public synchronized void read(DataInputStream in) throws IOException {
+        for (Ring ring : rings) {
+            ring.read(in);
+        }
+    }
+
+    private static final class Ring {
+        private final long bucketMs;
+        private final long[] timestamps;
+        private final double[] values;
+        private int head;
+        private int count;
+        // Незакрытая корзина свёртки
+        private long bucketStart = Long.MIN_VALUE;
+        private double bucketSum;
+        private int bucketCount;
+
+        Ring(int capacity, long bucketMs) {
+            this.bucketMs = bucketMs;
+            this.timestamps = new long[Math.max(2, capacity)];
+            this.values = new double[timestamps.length];
+        }
+
+        int capacity() {
+            return timestamps.length;
+        }
+
+        void record(long timestamp, double value) {
+            if (bucketMs == 0) {
+                add(timestamp, value);
+                return;
+            }
+            long bucket = timestamp - Math.floorMod(timestamp, bucketMs);
+            if (bucket != bucketStart) {
+                closeBucket();
+                bucketStart = bucket;
+            }
+            bucketSum += value;
+            bucketCount++;
+        }
+
+        private void closeBucket() {
+            if (bucketCount > 0) {
+                add(bucketStart, bucketSum / bucketCount);
+            }
+            bucketSum = 0;
+            bucketCount = 0;
+        }
+
+        private void add(long timestamp, double value) {
+            timestamps[head] = timestamp;
+            values[head] = value;
+            head = (head + 1) % timestamps.length;
+            if (count < timestamps.length) {
+                count++;
+            }
+        }
+
+        private int physical(int logical) {
+            return Math.floorMod(head - count + logical, timestamps.length);
+        }
+
+        long oldest() {
+            return count == 0 ? Long.MAX_VALUE : timestamps[physical(0)];
+        }
+
+        double last() {
+            if (bucketCount > 0) {
+                return bucketSum / bucketCount;
+            }
+            return count == 0 ? Double.NaN : values[physical(count - 1)];
+        }
+
+        Range query(long from, long to) {
+            // Точки идут по возрастанию времени - ищем начало диапазона двоичным поиском
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[physical(mid)] < from) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            boolean withOpenBucket = bucketCount > 0 && bucketStart >= from && bucketStart <= to;
+            long[] resultTimestamps = new long[count - low + (withOpenBucket ? 1 : 0)];
+            double[] resultValues = new double[resultTimestamps.length];
+            int size = 0;
+            for (int i = low; i < count; i++) {
+                int index = physical(i);
+                if (timestamps[index] > to) {
+                    break;
+                }
+                resultTimestamps[size] = timestamps[index];
+                resultValues[size++] = values[index];
+            }
+            if (withOpenBucket) {
+                resultTimestamps[size] = bucketStart;
+                resultValues[size++] = bucketSum / bucketCount;
+            }
+            return new Range(Arrays.copyOf(resultTimestamps, size), Arrays.copyOf(resultValues, size));
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                int index = physical(i);
+                out.writeLong(timestamps[index]);
+                out.writeDouble(values[index]);
+            }
+            out.writeLong(bucketStart);
+            out.writeDouble(bucketSum);
+            out.writeInt(bucketCount);
+        }
+
+        // Если ёмкость уменьшилась в настройках, остаются самые свежие точки
+        void read(DataInputStream in) throws IOException {
+            int stored = in.readInt();
+            head = 0;
+            count = 0;
+            for (int i = 0; i < stored; i++) {
+                add(in.readLong(), in.readDouble());
+            }
+            bucketStart = in.readLong();
+            bucketSum = in.readDouble();
+            bucketCount = in.readInt();
+        }
+    }
+}
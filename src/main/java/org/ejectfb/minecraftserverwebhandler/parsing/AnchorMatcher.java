@@ -0,0 +1,99 @@
+package org.ejectfb.minecraftserverwebhandler.parsing;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+// Автомат Ахо-Корасик по литералам: один проход по строке, без аллокаций, результат - битовая маска найденных литералов
+public final class AnchorMatcher {
+    public static final int MAX_ANCHORS = Long.SIZE;
+
+    private final char[] charClass = new char[Character.MAX_VALUE + 1];
+    private final int alphabetSize;
+    private final int[] transitions;
+    private final long[] outputs;
+
+    public AnchorMatcher(List<String> anchors) {
+        if (anchors.size() > MAX_ANCHORS) {
+            throw new IllegalArgumentException("Too many anchors: " + anchors.size() + " (max " + MAX_ANCHORS + ")");
+        }
+
+        // Класс 0 - любой символ, которого нет ни в одном литерале
+        int classes = 1;
+        for (String anchor : anchors) {
+            for (int i = 0; i < anchor.length(); i++) {
+                char c = anchor.charAt(i);
+                if (charClass[c] == 0) {
+                    charClass[c] = (char) classes++;
+                }
+            }
+        }
+        this.alphabetSize = classes;
+
+        List<Map<Integer, Integer>> trie = new ArrayList<>();
+        List<Long> trieOutputs = new ArrayList<>();
+        trie.add(new HashMap<>());
+        trieOutputs.add(0L);
+        for (int a = 0; a < anchors.size(); a++) {
+            String anchor = anchors.get(a);
+            int state = 0;
+            for (int i = 0; i < anchor.length(); i++) {
+                int cls = charClass[anchor.charAt(i)];
+                Integer next = trie.get(state).get(cls);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new HashMap<>());
+                    trieOutputs.add(0L);
+                    trie.get(state).put(cls, next);
+                }
+                state = next;
+            }
+            trieOutputs.set(state, trieOutputs.get(state) | (1L << a));
+        }
+
+        int states = trie.size();
+        this.transitions = new int[states * alphabetSize];
+        this.outputs = new long[states];
+        int[] fail = new int[states];
+        Queue<Integer> queue = new ArrayDeque<>();
+
+        for (int cls = 0; cls < alphabetSize; cls++) {
+            Integer next = trie.get(0).get(cls);
+            if (next != null) {
+                transitions[cls] = next;
+                queue.add(next);
+            }
+        }
+        outputs[0] = trieOutputs.get(0);
+
+        // Обход в ширину: достраиваем переходы по суффиксным ссылкам до полного ДКА
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs[state] = trieOutputs.get(state) | outputs[fail[state]];
+            for (int cls = 0; cls < alphabetSize; cls++) {
+                Integer next = trie.get(state).get(cls);
+                if (next != null) {
+                    fail[next] = transitions[fail[state] * alphabetSize + cls];
+                    transitions[state * alphabetSize + cls] = next;
+                    queue.add(next);
+                } else {
+                    transitions[state * alphabetSize + cls] = transitions[fail[state] * alphabetSize + cls];
+                }
+            }
+        }
+    }
+
+    public long scan(CharSequence text) {
+        int state = 0;
+        long found = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            state = transitions[state * alphabetSize + charClass[text.charAt(i)]];
+            found |= outputs[state];
+        }
+        return found;
+    }
+}
@@ -0,0 +1,11 @@
+package org.ejectfb.minecraftserverwebhandler.parsing;
+
+public enum ConsoleEventType {
+    PLAYERS_ONLINE,
+    MEMORY,
+    TPS,
+    SERVER_STARTED,
+    PLAYER_JOINED,
+    PLAYER_LEFT,
+    WORLD_SAVED
+}
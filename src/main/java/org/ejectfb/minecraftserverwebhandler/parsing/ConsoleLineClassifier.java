@@ -0,0 +1,54 @@
+package org.ejectfb.minecraftserverwebhandler.parsing;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class ConsoleLineClassifier {
+    public static final int NO_MATCH = -1;
+
+    private final List<ConsoleRule> rules;
+    private final long[] ruleMasks;
+    private final AnchorMatcher matcher;
+
+    public ConsoleLineClassifier(List<ConsoleRule> rules) {
+        this.rules = List.copyOf(rules);
+        this.ruleMasks = new long[this.rules.size()];
+
+        // Одинаковые литералы разных правил делят один бит маски
+        Map<String, Integer> anchorIndex = new LinkedHashMap<>();
+        for (int r = 0; r < this.rules.size(); r++) {
+            for (String anchor : this.rules.get(r).anchors()) {
+                int index = anchorIndex.computeIfAbsent(anchor, key -> anchorIndex.size());
+                if (index >= AnchorMatcher.MAX_ANCHORS) {
+                    throw new IllegalArgumentException("Too many distinct anchors in console rules");
+                }
+                ruleMasks[r] |= 1L << index;
+            }
+        }
+        this.matcher = new AnchorMatcher(new ArrayList<>(anchorIndex.keySet()));
+    }
+
+    // Индекс первого подходящего правила в порядке регистрации или NO_MATCH
+    public int classify(CharSequence line) {
+        long found = matcher.scan(line);
+        if (found == 0) {
+            return NO_MATCH;
+        }
+        for (int r = 0; r < ruleMasks.length; r++) {
+            if ((found & ruleMasks[r]) == ruleMasks[r]) {
+                return r;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    public ConsoleRule rule(int index) {
+        return rules.get(index);
+    }
+
+    public List<ConsoleRule> getRules() {
+        return rules;
+    }
+}
@@ -0,0 +1,186 @@
+package org.ejectfb.minecraftserverwebhandler.parsing;
+
+import java.time.Instant;
+import java.time.ZoneId;
+
+// Заголовок строки лога: [12:00:00] [Server thread/INFO]: ..., [12:00:00 INFO]: ..., [12:00:00] [main/WARN] [forge/Loader]: ...
+public record ConsoleLineHeader(int secondOfDay, String thread, String level, String logger, int messageOffset) {
+    public static final ConsoleLineHeader NONE = new ConsoleLineHeader(-1, null, null, null, 0);
+
+    private static final String[] LEVELS = {"TRACE", "DEBUG", "INFO", "WARN", "ERROR", "FATAL"};
+    private static final long DAY_MS = 86_400_000L;
+    private static final long CLOCK_SKEW_MS = 60_000L;
+    private static final int NAME_CACHE_SIZE = 1024;
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    // Имена потоков и логгеров повторяются, поэтому строки в истории переиспользуют один экземпляр.
+    // Поиск идёт по символам строки без создания подстроки; гонка при записи безопасна - String неизменяем
+    private static final String[] NAMES = new String[NAME_CACHE_SIZE];
+
+    public static ConsoleLineHeader parse(CharSequence line) {
+        int length = line.length();
+        if (length < 3 || line.charAt(0) != '[') {
+            return NONE;
+        }
+        int close = indexOf(line, ']', 1);
+        if (close < 0) {
+            return NONE;
+        }
+
+        int secondOfDay = secondOfDay(line, 1);
+        String thread = null;
+        String level = null;
+        String logger = null;
+        int position;
+
+        int space = lastIndexOf(line, ' ', 1, close);
+        if (space > 0 && (level = level(line, space + 1, close)) != null) {
+            // Paper: [12:00:00 INFO]: ...
+            position = close + 1;
+        } else {
+            // Vanilla/Forge: [12:00:00] [thread/LEVEL]: ...
+            if (close + 2 >= length || line.charAt(close + 1) != ' ' || line.charAt(close + 2) != '[') {
+                return NONE;
+            }
+            int start = close + 3;
+            close = indexOf(line, ']', start);
+            int slash = close < 0 ? -1 : lastIndexOf(line, '/', start, close);
+            if (slash < 0 || (level = level(line, slash + 1, close)) == null) {
+                return NONE;
+            }
+            thread = name(line, start, slash);
+            position = close + 1;
+
+            if (position + 1 < length && line.charAt(position) == ' ' && line.charAt(position + 1) == '[') {
+                int loggerClose = indexOf(line, ']', position + 2);
+                if (loggerClose > 0) {
+                    logger = name(line, position + 2, loggerClose);
+                    position = loggerClose + 1;
+                }
+            }
+        }
+
+        if (position < length && line.charAt(position) == ':') {
+            position++;
+        }
+        if (position < length && line.charAt(position) == ' ') {
+            position++;
+        }
+
+        // Плагины Bukkit подписывают сообщения как [PluginName] текст
+        if (logger == null && position < length && line.charAt(position) == '[') {
+            int pluginClose = indexOf(line, ']', position + 1);
+            if (pluginClose > position + 1 && isPluginName(line, position + 1, pluginClose)) {
+                logger = name(line, position + 1, pluginClose);
+            }
+        }
+        return new ConsoleLineHeader(secondOfDay, thread, level, logger, position);
+    }
+
+    public static String[] levels() {
+        return LEVELS.clone();
+    }
+
+    // В логе только время суток: дату берём из момента получения строки, с поправкой на переход через полночь
+    public long timestamp(long receivedAt) {
+        if (secondOfDay < 0) {
+            return receivedAt;
+        }
+        long offset = ZONE.getRules().getOffset(Instant.ofEpochMilli(receivedAt)).getTotalSeconds() * 1000L;
+        long local = receivedAt + offset;
+        long parsed = Math.floorDiv(local, DAY_MS) * DAY_MS + secondOfDay * 1000L + Math.floorMod(local, 1000L);
+        if (parsed - local > CLOCK_SKEW_MS) {
+            parsed -= DAY_MS;
+        } else if (local - parsed > DAY_MS - CLOCK_SKEW_MS) {
+            parsed += DAY_MS;
+        }
+        return parsed - offset;
+    }
+
+    // HH:MM:SS сразу после открывающей скобки, иначе -1
+    private static int secondOfDay(CharSequence line, int from) {
+        if (line.length() < from + 8 || line.charAt(from + 2) != ':' || line.charAt(from + 5) != ':') {
+            return -1;
+        }
+        int hours = twoDigits(line, from);
+        int minutes = twoDigits(line, from + 3);
+        int seconds = twoDigits(line, from + 6);
+        if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59 || seconds < 0 || seconds > 59) {
+            return -1;
+        }
+        return hours * 3600 + minutes * 60 + seconds;
+    }
+
+    private static int twoDigits(CharSequence line, int from) {
+        char high = line.charAt(from);
+        char low = line.charAt(from + 1);
+        if (high < '0' || high > '9' || low < '0' || low > '9') {
+            return -1;
+        }
+        return (high - '0') * 10 + (low - '0');
+    }
+
+    private static String name(CharSequence line, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + line.charAt(i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & (NAME_CACHE_SIZE - 1);
+        String cached = NAMES[slot];
+        if (cached != null && cached.length() == to - from && regionMatches(line, from, cached)) {
+            return cached;
+        }
+        StringBuilder value = new StringBuilder(to - from);
+        for (int i = from; i < to; i++) {
+            value.append(line.charAt(i));
+        }
+        String name = value.toString();
+        NAMES[slot] = name;
+        return name;
+    }
+
+    private static String level(CharSequence line, int from, int to) {
+        for (String level : LEVELS) {
+            if (to - from == level.length() && regionMatches(line, from, level)) {
+                return level;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isPluginName(CharSequence line, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = line.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionMatches(CharSequence line, int from, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (line.charAt(from + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(CharSequence line, char c, int from) {
+        for (int i = from; i < line.length(); i++) {
+            if (line.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(CharSequence line, char c, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (line.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,28 @@
+package org.ejectfb.minecraftserverwebhandler.parsing;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Правило срабатывает, когда в строке найдены все anchors; extractor вызывается только для совпавших строк
+public record ConsoleRule(String id, ConsoleEventType type, List<String> anchors, Pattern extractor) {
+
+    public ConsoleRule {
+        if (anchors.isEmpty()) {
+            throw new IllegalArgumentException("Rule " + id + " must have at least one anchor");
+        }
+        anchors = List.copyOf(anchors);
+    }
+
+    public static ConsoleRule of(String id, ConsoleEventType type, String regex, String... anchors) {
+        return new ConsoleRule(id, type, List.of(anchors), regex == null ? null : Pattern.compile(regex));
+    }
+
+    public String extract(CharSequence line) {
+        if (extractor == null) {
+            return null;
+        }
+        Matcher matcher = extractor.matcher(line);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+}
@@ -0,0 +1,75 @@
+package org.ejectfb.minecraftserverwebhandler.parsing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.ejectfb.minecraftserverwebhandler.parsing.ConsoleEventType.*;
+
+public final class ConsoleRules {
+    public static final String VANILLA = "vanilla";
+    public static final String PAPER = "paper";
+    public static final String NLOGIN = "nlogin";
+    public static final String FORGE = "forge";
+
+    // ANSI-коды цвета и §-коды, которыми плагины раскрашивают числа
+    private static final String COLOR_CODES = "(?:\\u001B\\[[0-9;]*m|\\u00A7.|\\*|\\s)*";
+
+    private static final Map<String, List<ConsoleRule>> RULE_SETS = new LinkedHashMap<>();
+
+    static {
+        RULE_SETS.put(VANILLA, List.of(
+                ConsoleRule.of("vanilla-players-online", PLAYERS_ONLINE, "There are (\\S+)",
+                        "There are ", " players online"),
+                ConsoleRule.of("vanilla-server-started", SERVER_STARTED, null,
+                        "[Server thread/INFO]: Done ("),
+                ConsoleRule.of("vanilla-player-joined", PLAYER_JOINED, "(\\w+) joined the game",
+                        " joined the game"),
+                ConsoleRule.of("vanilla-player-left", PLAYER_LEFT, "(\\w+) lost connection: Disconnected",
+                        " lost connection: Disconnected"),
+                // Ответ на save-all; Paper и Forge пишут ту же строку
+                ConsoleRule.of("vanilla-world-saved", WORLD_SAVED, null,
+                        "]: Saved the game")
+        ));
+        RULE_SETS.put(PAPER, List.of(
+                ConsoleRule.of("paper-memory", MEMORY, "Current Memory Usage:\\s*(.*\\S)",
+                        "Current Memory Usage:"),
+                ConsoleRule.of("paper-tps", TPS, "TPS from last[^:]*:" + COLOR_CODES + "([0-9]+(?:\\.[0-9]+)?)",
+                        "TPS from last"),
+                ConsoleRule.of("paper-server-started", SERVER_STARTED, null,
+                        " INFO]: Done (", "For help")
+        ));
+        RULE_SETS.put(NLOGIN, List.of(
+                ConsoleRule.of("nlogin-player-joined", PLAYER_JOINED, "user (\\w+) has successfully logged in\\.",
+                        "The user ", " has successfully logged in.")
+        ));
+        RULE_SETS.put(FORGE, List.of(
+                ConsoleRule.of("forge-tps", TPS, "Mean TPS: ([0-9]+(?:\\.[0-9]+)?)",
+                        "Overall", "Mean TPS: "),
+                ConsoleRule.of("forge-server-started", SERVER_STARTED, null,
+                        "/DedicatedServer]: Done (")
+        ));
+    }
+
+    private ConsoleRules() {
+    }
+
+    public static List<ConsoleRule> forSets(Collection<String> names) {
+        List<ConsoleRule> rules = new ArrayList<>();
+        for (String name : names) {
+            List<ConsoleRule> set = RULE_SETS.get(name.trim().toLowerCase(Locale.ROOT));
+            if (set == null) {
+                throw new IllegalArgumentException("Unknown console rule set: " + name);
+            }
+            rules.addAll(set);
+        }
+        return rules;
+    }
+
+    public static Collection<String> availableSets() {
+        return RULE_SETS.keySet();
+    }
+}
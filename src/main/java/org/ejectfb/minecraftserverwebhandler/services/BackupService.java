@@ -3,13 +3,21 @@ package org.ejectfb.minecraftserverwebhandler.services;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import org.apache.tomcat.util.http.fileupload.FileUtils;
+import org.ejectfb.minecraftserverwebhandler.backup.BackupManifest;
+import org.ejectfb.minecraftserverwebhandler.backup.ChunkStore;
+import org.ejectfb.minecraftserverwebhandler.backup.IncrementalBackup;
+import org.ejectfb.minecraftserverwebhandler.backup.ParallelZipWriter;
 import org.ejectfb.minecraftserverwebhandler.config.ServerProperties;
+import org.ejectfb.minecraftserverwebhandler.dto.BackupEntry;
+import org.ejectfb.minecraftserverwebhandler.parsing.ConsoleEventType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.DayOfWeek;
 import java.time.Duration;
 import java.time.LocalDateTime;
@@ -17,21 +25,50 @@ import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 @Service
 public class BackupService {
+    private static final String STORE_DIRECTORY = "store";
+    private static final String STAGING_DIRECTORY = "staging";
+    private static final String RESTORE_STAGING_SUFFIX = ".restore";
+    private static final String RESTORE_PREVIOUS_SUFFIX = ".previous";
+    // Список верхних элементов, заменённых последним восстановлением, - для отката
+    private static final String RESTORED_ENTRIES = ".restored-entries";
+    private static final String BACKUP_GLOB = "backup_*.{zip," + BackupManifest.EXTENSION.substring(1) + "}";
+
+    // Снимок для горячего бэкапа: staging и записи манифеста base для файлов, которые не пришлось копировать
+    private record Snapshot(Path staging, Path base, List<BackupManifest.FileEntry> unchanged) {
+    }
+
     private final SimpMessagingTemplate messagingTemplate;
     private final ServerProperties serverProperties;
     private final ServerService serverService;
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
     private ScheduledFuture<?> backupTask;
     private final List<ScheduledFuture<?>> notificationTasks = new ArrayList<>();
+    private final AtomicLong backupCount = new AtomicLong();
+    private final AtomicLong backupFailureCount = new AtomicLong();
+    private final AtomicLong backupBytes = new AtomicLong();
+    private final AtomicLong backupMillis = new AtomicLong();
+    private volatile long lastBackupSizeBytes;
+    private volatile long lastBackupDurationMs;
+    // Создание инкрементального бэкапа и сборка мусора в хранилище кусков не должны пересекаться
+    private final Object storeLock = new Object();
 
     @Autowired
     TelegramBotService telegramBotService;
@@ -192,14 +229,154 @@ public class BackupService {
     }
 
     public CompletableFuture<Void> createBackup(String type) {
+        if (serverService.isServerRunning() && serverProperties.getBackup().isHot()) {
+            return createHotBackup(type);
+        }
+        return createStoppedBackup(type);
+    }
+
+    // Игроки остаются на сервере: запись мира приостанавливается только на время копирования файлов
+    private CompletableFuture<Void> createHotBackup(String type) {
+        CompletableFuture<Void> backupFuture = new CompletableFuture<>();
+        scheduler.execute(() -> {
+            Snapshot snapshot;
+            try {
+                snapshot = snapshotServer();
+            } catch (Exception e) {
+                handleBackupError(e, type);
+                backupFuture.completeExceptionally(e);
+                return;
+            }
+            if (snapshot == null) {
+                serverService.sendToConsole("⚠️ World save was not confirmed, falling back to backup with server stop");
+                createStoppedBackup(type).whenComplete((v, e) -> {
+                    if (e != null) {
+                        backupFuture.completeExceptionally(e);
+                    } else {
+                        backupFuture.complete(null);
+                    }
+                });
+                return;
+            }
+            try {
+                performBackupCreation(type, snapshot.staging(), snapshot);
+                backupFuture.complete(null);
+            } catch (Exception e) {
+                handleBackupError(e, type);
+                backupFuture.completeExceptionally(e);
+            } finally {
+                deleteStaging(snapshot.staging());
+            }
+        });
+        return backupFuture;
+    }
+
+    // Копия файлов сервера в staging при выключенном автосохранении; null - сервер не подтвердил сохранение мира.
+    // В инкрементальном режиме копируются только файлы, изменившиеся с последнего бэкапа, - остальные
+    // всё равно не читались бы, а автосохранение выключено ровно на время копирования
+    private Snapshot snapshotServer() throws IOException {
+        Path serverDir = serverDirectory();
+        Path backupRoot = backupRoot();
+        Path stagingRoot = backupRoot.resolve(STAGING_DIRECTORY);
+        // Остатки прерванного бэкапа
+        if (Files.exists(stagingRoot)) {
+            FileUtils.deleteDirectory(stagingRoot.toFile());
+        }
+
+        Path base = null;
+        Map<String, BackupManifest.FileEntry> known = new HashMap<>();
+        if (serverProperties.getBackup().isIncremental()) {
+            base = findLatestManifest();
+            if (base != null) {
+                try {
+                    for (BackupManifest.FileEntry entry : BackupManifest.read(base).files()) {
+                        known.put(entry.path(), entry);
+                    }
+                } catch (IOException e) {
+                    base = null;
+                    serverService.sendToConsole("⚠️ Previous backup manifest is unreadable, all files will be copied: "
+                            + e.getMessage());
+                }
+            }
+        }
+
+        long saveTimeoutMs = Math.max(5, serverProperties.getBackup().getSaveTimeoutSeconds()) * 1000L;
+        try {
+            serverService.sendCommand("save-off");
+            serverService.sendCommand("save-all flush", ConsoleEventType.WORLD_SAVED, saveTimeoutMs).get();
+        } catch (ExecutionException | IllegalStateException e) {
+            resumeSaving();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            resumeSaving();
+            throw new InterruptedIOException("Interrupted while waiting for world save");
+        }
+
+        long snapshotStart = System.currentTimeMillis();
+        Path staging = stagingRoot.resolve(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")));
+        List<BackupManifest.FileEntry> unchanged = new ArrayList<>();
+        int copied = 0;
+        try {
+            Files.createDirectories(staging);
+            // COPY_ATTRIBUTES сохраняет mtime для инкрементальных бэкапов; на Linux JDK копирует через reflink
+            // или copy_file_range, где это возможно. Жёсткие ссылки не годятся: region-файлы меняются на месте.
+            for (Path path : collectBackupFiles(serverDir, backupRoot)) {
+                String name = serverDir.relativize(path).toString().replace('\\', '/');
+                Path target = staging.resolve(name);
+                try {
+                    BackupManifest.FileEntry old = known.get(name);
+                    if (old != null) {
+                        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                        if (old.size() == attributes.size() && old.modified() == attributes.lastModifiedTime().toMillis()) {
+                            unchanged.add(old);
+                            continue;
+                        }
+                    }
+                    Files.createDirectories(target.getParent());
+                    Files.copy(path, target, StandardCopyOption.COPY_ATTRIBUTES);
+                    copied++;
+                } catch (IOException e) {
+                    reportBackupFileError(path, e);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            deleteStaging(staging);
+            throw e;
+        } finally {
+            resumeSaving();
+        }
+        serverService.sendToConsole("World snapshot taken in " + (System.currentTimeMillis() - snapshotStart)
+                + " ms (" + copied + " files copied, " + unchanged.size() + " unchanged), saving resumed");
+        return new Snapshot(staging, base, unchanged);
+    }
+
+    private void resumeSaving() {
+        try {
+            serverService.sendCommand("save-on");
+        } catch (IOException | IllegalStateException e) {
+            serverService.sendToConsole("⚠️ Failed to send save-on: " + e.getMessage());
+        }
+    }
+
+    private void deleteStaging(Path staging) {
+        try {
+            FileUtils.deleteDirectory(staging.toFile());
+        } catch (IOException e) {
+            serverService.sendToConsole("Warning: Failed to delete backup staging directory: " + e.getMessage());
+        }
+    }
+
+    private CompletableFuture<Void> createStoppedBackup(String type) {
         CompletableFuture<Void> backupFuture = new CompletableFuture<>();
 
         if (!serverService.isServerRunning()) {
             try {
-                performBackupCreation(type);
+                performBackupCreation(type, serverDirectory(), null);
 
                 backupFuture.complete(null);
             } catch (IOException e) {
+                backupFailureCount.incrementAndGet();
                 backupFuture.completeExceptionally(e);
             }
             return backupFuture;
@@ -209,7 +386,7 @@ public class BackupService {
 
         serverService.getServerStopFuture().thenRunAsync(() -> {
             try {
-                performBackupCreation(type);
+                performBackupCreation(type, serverDirectory(), null);
 
                 telegramBotService.sendServerStartingNotification();
                 serverService.startServer(serverService.getServerCommand());
@@ -231,49 +408,216 @@ public class BackupService {
         return backupFuture;
     }
 
-    private void performBackupCreation(String type) throws IOException {
+    // serverDir - папка сервера или её копия в staging при горячем бэкапе (тогда snapshot не null)
+    private void performBackupCreation(String type, Path serverDir, Snapshot snapshot) throws IOException {
         long backupDurationStart = System.currentTimeMillis();
-        Path serverDir = Path.of(new File(new File(serverProperties.getJar()).getPath()).getAbsoluteFile().getParent());
-        Path backupDir = Paths.get(serverProperties.getBackup().getDirectory(), type).toAbsolutePath();
-
-        serverDir = serverDir.normalize();
-        backupDir = backupDir.normalize();
+        Path backupDir = backupRoot().resolve(type);
 
         LocalDateTime now = LocalDateTime.now();
         String timestamp = now.format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-        String backupName = "backup_" + timestamp + ".zip";
+        String backupName = "backup_" + timestamp
+                + (serverProperties.getBackup().isIncremental() ? BackupManifest.EXTENSION : ".zip");
         telegramBotService.sendServerBackupCreatingNotification(backupName);
 
         if (!Files.exists(backupDir)) {
             Files.createDirectories(backupDir);
         }
 
+        List<Path> files = collectBackupFiles(serverDir, backupDir.getParent());
+        int threads = serverProperties.getBackup().getThreads() > 0
+                ? serverProperties.getBackup().getThreads()
+                : Runtime.getRuntime().availableProcessors();
+        if (serverProperties.getBackup().isIncremental()) {
+            createIncrementalBackup(type, serverDir, backupDir, backupName, files,
+                    snapshot == null ? List.of() : snapshot.unchanged(), snapshot == null ? null : snapshot.base(),
+                    threads, backupDurationStart);
+            return;
+        }
+
         Path zipPath = backupDir.resolve(backupName);
-        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zipPath.toFile()))) {
-            Path finalBackupDir = backupDir;
-            Path finalServerDir = serverDir;
-            Files.walk(serverDir)
+        Path partPath = backupDir.resolve(backupName + ".part");
+        ParallelZipWriter.Result result;
+        try (ParallelZipWriter zip = new ParallelZipWriter(partPath, threads, this::reportBackupFileError)) {
+            for (Path path : files) {
+                Path relativePath = serverDir.relativize(path);
+                zip.addFile(relativePath.toString().replace("\\", "/"), path);
+            }
+            result = zip.finish();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partPath);
+            throw e;
+        }
+        // Недописанный архив никогда не попадает под имя backup_*.zip
+        Files.move(partPath, zipPath, StandardCopyOption.ATOMIC_MOVE);
+
+        long backupDuration = System.currentTimeMillis() - backupDurationStart;
+        recordBackup(result.compressedBytes(), backupDuration);
+
+        String backupSize = String.format(Locale.US, "%.1f", result.compressedBytes() / (1024.0 * 1024 * 1024));
+        String backupThroughput = throughput(result.uncompressedBytes(), backupDuration);
+        serverService.sendToConsole("Backup created: " + zipPath + " size: " + backupSize + "Gb, files: " + result.entries()
+                + ", " + backupThroughput + " MB/s on " + threads + " threads");
+        telegramBotService.sendServerBackupCreatedNotification(backupName, type, backupSize, backupDuration, backupThroughput);
+    }
+
+    // Размер инкрементального бэкапа - только новые куски, попавшие в хранилище
+    private void createIncrementalBackup(String type, Path serverDir, Path backupDir, String backupName, List<Path> files,
+                                         List<BackupManifest.FileEntry> unchanged, Path base, int threads,
+                                         long backupDurationStart) throws IOException {
+        Path manifestPath = backupDir.resolve(backupName);
+        IncrementalBackup.Result result;
+        synchronized (storeLock) {
+            // Куски неизменённых файлов живы, пока жив манифест, из которого они взяты
+            if (!unchanged.isEmpty() && !Files.exists(base)) {
+                throw new IOException("Backup " + base.getFileName() + " was deleted during the world snapshot");
+            }
+            Path previousPath = findLatestManifest();
+            BackupManifest previous = null;
+            if (previousPath != null) {
+                try {
+                    previous = BackupManifest.read(previousPath);
+                } catch (IOException e) {
+                    serverService.sendToConsole("⚠️ Previous backup manifest is unreadable, all files will be hashed: "
+                            + e.getMessage());
+                }
+            }
+            result = new IncrementalBackup(chunkStore(), threads, this::reportBackupFileError)
+                    .create(serverDir, files, unchanged, previous);
+            result.manifest().write(manifestPath);
+        }
+
+        long backupDuration = System.currentTimeMillis() - backupDurationStart;
+        recordBackup(result.storedBytes(), backupDuration);
+
+        String backupSize = String.format(Locale.US, "%.1f", result.storedBytes() / (1024.0 * 1024 * 1024));
+        String backupThroughput = throughput(result.uncompressedBytes(), backupDuration);
+        serverService.sendToConsole("Incremental backup created: " + manifestPath + " files: " + result.manifest().files().size()
+                + " (" + result.reusedFiles() + " unchanged, " + result.reusedRegionChunks() + " region chunks reused), read: " + result.readBytes() / (1024 * 1024)
+                + "Mb, new data: " + result.storedBytes() / (1024 * 1024) + "Mb, " + backupThroughput + " MB/s");
+        telegramBotService.sendServerBackupCreatedNotification(backupName, type, backupSize, backupDuration, backupThroughput);
+    }
+
+    private List<Path> collectBackupFiles(Path serverDir, Path backupRoot) throws IOException {
+        // Копия в staging лежит внутри папки бэкапов и берётся целиком
+        boolean staged = serverDir.startsWith(backupRoot);
+        List<Path> excluded = handlerDirectories();
+        try (Stream<Path> files = Files.walk(serverDir)) {
+            return files
                     .filter(path -> !Files.isDirectory(path))
-                    .filter(path -> !path.startsWith(finalBackupDir.getParent())) // Исключаем саму папку с бэкапами
-                    .forEach(path -> {
-                        try {
-                            Path relativePath = finalServerDir.relativize(path);
-                            zos.putNextEntry(new ZipEntry(relativePath.toString().replace("\\", "/")));
-                            Files.copy(path, zos);
-                            zos.closeEntry();
-                        } catch (IOException e) {
-                            serverService.sendToConsole("⚠️ Error adding file to backup: " + path + " - " + e.getMessage());
-                        }
-                    });
+                    .filter(path -> staged || excluded.stream().noneMatch(path::startsWith)) // Исключаем данные обработчика
+                    .toList();
+        }
+    }
+
+    // Папки, которые обработчик держит открытыми сам: бэкапы, журнал консоли, метрики и активность игроков.
+    // По умолчанию они лежат в папке сервера, но не бэкапятся и не заменяются при восстановлении
+    private List<Path> handlerDirectories() {
+        return Stream.of(serverProperties.getBackup().getDirectory(), serverProperties.getConsole().getJournalDirectory(),
+                        serverProperties.getMetrics().getDirectory(), serverProperties.getPlayers().getDirectory())
+                .map(directory -> Paths.get(directory).toAbsolutePath().normalize())
+                .toList();
+    }
+
+    private boolean isHandlerPath(Path path) {
+        return handlerDirectories().stream().anyMatch(path::startsWith);
+    }
+
+    private Path serverDirectory() {
+        return Path.of(new File(new File(serverProperties.getJar()).getPath()).getAbsoluteFile().getParent()).normalize();
+    }
+
+    private Path backupRoot() {
+        return Paths.get(serverProperties.getBackup().getDirectory()).toAbsolutePath().normalize();
+    }
+
+    private void reportBackupFileError(Path path, IOException e) {
+        serverService.sendToConsole("⚠️ Error adding file to backup: " + path + " - " + e.getMessage());
+    }
+
+    private void recordBackup(long backupSizeBytes, long backupDuration) {
+        lastBackupSizeBytes = backupSizeBytes;
+        lastBackupDurationMs = backupDuration;
+        backupBytes.addAndGet(backupSizeBytes);
+        backupMillis.addAndGet(backupDuration);
+        backupCount.incrementAndGet();
+    }
+
+    // Скорость считается по исходным данным мира, а не по размеру архива
+    private static String throughput(long uncompressedBytes, long backupDuration) {
+        double throughput = uncompressedBytes / (1024.0 * 1024) / Math.max(0.001, backupDuration / 1000.0);
+        return String.format(Locale.US, "%.1f", throughput);
+    }
+
+    private ChunkStore chunkStore() {
+        return new ChunkStore(Paths.get(serverProperties.getBackup().getDirectory(), STORE_DIRECTORY).toAbsolutePath());
+    }
+
+    // Самый свежий манифест среди всех типов: имена бэкапов сортируются по времени создания
+    private Path findLatestManifest() throws IOException {
+        Path latest = null;
+        for (Path manifest : listManifests()) {
+            if (latest == null || manifest.getFileName().toString().compareTo(latest.getFileName().toString()) > 0) {
+                latest = manifest;
+            }
+        }
+        return latest;
+    }
+
+    private List<Path> listManifests() throws IOException {
+        Path backupRoot = Paths.get(serverProperties.getBackup().getDirectory());
+        if (!Files.isDirectory(backupRoot)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.find(backupRoot, 2, (path, attributes) -> attributes.isRegularFile()
+                && path.getFileName().toString().startsWith("backup_")
+                && path.getFileName().toString().endsWith(BackupManifest.EXTENSION))) {
+            return files.toList();
         }
+    }
+
+    // Хранение по количеству бэкапов превращается в сборку мусора: куски живут, пока на них ссылается хоть один манифест
+    private void collectUnreferencedChunks() throws IOException {
+        synchronized (storeLock) {
+            Set<String> live = new HashSet<>();
+            for (Path manifest : listManifests()) {
+                for (BackupManifest.FileEntry entry : BackupManifest.read(manifest).files()) {
+                    live.addAll(entry.chunks());
+                }
+            }
+            ChunkStore.Collected collected = chunkStore().collect(live);
+            if (collected.chunks() > 0) {
+                serverService.sendToConsole("Backup store cleanup: removed " + collected.chunks() + " chunks, "
+                        + collected.bytes() / (1024 * 1024) + "Mb freed");
+            }
+        }
+    }
+
+    public long getBackupCount() {
+        return backupCount.get();
+    }
+
+    public long getBackupFailureCount() {
+        return backupFailureCount.get();
+    }
+
+    public long getBackupBytes() {
+        return backupBytes.get();
+    }
 
-        String backupSize = String.format(Locale.US, "%.1f"
-                , new File(backupDir.toFile(), backupName).length() / (1024.0 * 1024 * 1024));
-        serverService.sendToConsole("Backup created: " + zipPath + " size: " + backupSize + "Gb");
-        telegramBotService.sendServerBackupCreatedNotification(backupName, type, backupSize, System.currentTimeMillis() - backupDurationStart);
+    public long getBackupMillis() {
+        return backupMillis.get();
+    }
+
+    public long getLastBackupSizeBytes() {
+        return lastBackupSizeBytes;
+    }
+
+    public long getLastBackupDurationMs() {
+        return lastBackupDurationMs;
     }
 
     private void handleBackupError(Exception e, String type) {
+        backupFailureCount.incrementAndGet();
         serverService.sendToConsole("Backup creation failed for " + type + ": " + e.getMessage());
         telegramBotService.sendMessage("❌ Ошибка создания бэкапа типа " + type + ": " + e.getMessage());
 
@@ -282,87 +626,364 @@ public class BackupService {
         }
     }
 
+    // Бэкап распаковывается, пока сервер ещё работает; остановка нужна только на время переименований
     public CompletableFuture<Void> restoreBackup(String backupName, String type) {
         CompletableFuture<Void> restoreFuture = new CompletableFuture<>();
+        telegramBotService.sendServerBackupRestoringNotification(backupName);
+        serverService.sendToConsole("Starting backup restore procedure");
 
-        if (serverService.isServerRunning()) {
-            telegramBotService.sendServerBackupRestoringNotification(backupName);
-            serverService.sendToConsole("Starting backup restore procedure");
+        scheduler.execute(() -> {
+            Path staging;
+            try {
+                staging = extractBackup(backupName, type);
+            } catch (Exception e) {
+                handleRestoreError(e, backupName);
+                restoreFuture.completeExceptionally(e);
+                return;
+            }
+            withServerStopped(() -> {
+                try {
+                    swapIn(staging);
+                    serverService.sendToConsole("Backup restored: " + backupName
+                            + ". Previous files are kept in " + previousDirectory() + " until the next restore");
+                    telegramBotService.sendServerBackupRestoredNotification(backupName);
+                } finally {
+                    deleteStaging(staging);
+                }
+            }, restoreFuture, e -> handleRestoreError(e, backupName));
+        });
+        return restoreFuture;
+    }
 
-            serverService.stopServer();
+    // Возвращает файлы, которые заменило последнее восстановление
+    public CompletableFuture<Void> rollbackRestore() {
+        CompletableFuture<Void> rollbackFuture = new CompletableFuture<>();
+        Path previous = previousDirectory();
+        if (!Files.isRegularFile(previous.resolve(RESTORED_ENTRIES))) {
+            rollbackFuture.completeExceptionally(new FileNotFoundException("There is no restore to roll back"));
+            return rollbackFuture;
+        }
+        serverService.sendToConsole("Rolling back last backup restore");
+        scheduler.execute(() -> withServerStopped(() -> {
+            Path discarded = restoreStagingDirectory();
+            if (Files.exists(discarded)) {
+                FileUtils.deleteDirectory(discarded.toFile());
+            }
+            Files.createDirectories(discarded);
+            Path serverDir = serverDirectory();
+            for (String name : Files.readAllLines(previous.resolve(RESTORED_ENTRIES), StandardCharsets.UTF_8)) {
+                Path live = serverDir.resolve(name);
+                if (Files.exists(live, LinkOption.NOFOLLOW_LINKS)) {
+                    Files.move(live, discarded.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+                }
+                if (Files.exists(previous.resolve(name), LinkOption.NOFOLLOW_LINKS)) {
+                    Files.move(previous.resolve(name), live, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            deleteStaging(previous);
+            deleteStaging(discarded);
+            serverService.sendToConsole("Backup restore rolled back");
+        }, rollbackFuture, e -> serverService.sendToConsole("Restore rollback failed: " + e.getMessage())));
+        return rollbackFuture;
+    }
 
-            serverService.getServerStopFuture().thenRunAsync(() -> {
-                try {
-                    performBackupRestoration(backupName, type);
+    private interface FileOperation {
+        void run() throws IOException;
+    }
 
+    // Запущенный сервер останавливается на время операции и запускается снова, даже если она не удалась
+    private void withServerStopped(FileOperation operation, CompletableFuture<Void> future, Consumer<Exception> onError) {
+        boolean wasRunning = serverService.isServerRunning();
+        if (wasRunning) {
+            serverService.stopServer();
+        }
+        serverService.getServerStopFuture().thenRunAsync(() -> {
+            try {
+                operation.run();
+                future.complete(null);
+            } catch (Exception e) {
+                onError.accept(e);
+                future.completeExceptionally(e);
+            }
+            if (wasRunning) {
+                try {
                     serverService.startServer(serverService.getServerCommand());
                     telegramBotService.sendServerStartingNotification();
+                } catch (IOException e) {
+                    serverService.sendToConsole("❌ Failed to restart server after restore: " + e.getMessage());
+                }
+            }
+        }, scheduler);
+    }
+
+    // Распаковка идёт сразу в соседнюю с сервером папку на той же файловой системе, чтобы потом хватило rename
+    private Path extractBackup(String backupName, String type) throws IOException {
+        Path backupPath = backupPath(backupName, type);
 
-                    restoreFuture.complete(null);
-                } catch (Exception e) {
-                    handleRestoreError(e, backupName);
-                    restoreFuture.completeExceptionally(e);
+        long extractStart = System.currentTimeMillis();
+        Path staging = restoreStagingDirectory();
+        if (Files.exists(staging)) {
+            FileUtils.deleteDirectory(staging.toFile());
+        }
+        Files.createDirectories(staging);
+        try {
+            if (backupName.endsWith(BackupManifest.EXTENSION)) {
+                new IncrementalBackup(chunkStore(), 1, this::reportBackupFileError)
+                        .restore(BackupManifest.read(backupPath), staging);
+            } else {
+                try (ZipInputStream zis = new ZipInputStream(new BufferedInputStream(Files.newInputStream(backupPath)))) {
+                    ZipEntry entry;
+                    while ((entry = zis.getNextEntry()) != null) {
+                        Path filePath = staging.resolve(entry.getName()).normalize();
+                        if (!filePath.startsWith(staging)) {
+                            throw new IOException("Backup entry is outside of server directory: " + entry.getName());
+                        }
+                        if (entry.isDirectory()) {
+                            Files.createDirectories(filePath);
+                            continue;
+                        }
+                        Files.createDirectories(filePath.getParent());
+                        Files.copy(zis, filePath, StandardCopyOption.REPLACE_EXISTING);
+                        // Время изменения из архива - чтобы инкрементальный бэкап после восстановления не перечитывал мир
+                        if (entry.getLastModifiedTime() != null) {
+                            Files.setLastModifiedTime(filePath, entry.getLastModifiedTime());
+                        }
+                    }
                 }
-            }, scheduler);
-        } else {
-            try {
-                performBackupRestoration(backupName, type);
-                restoreFuture.complete(null);
-            } catch (Exception e) {
-                handleRestoreError(e, backupName);
-                restoreFuture.completeExceptionally(e);
             }
+        } catch (IOException | RuntimeException e) {
+            deleteStaging(staging);
+            throw e;
         }
+        serverService.sendToConsole("Backup extracted in " + (System.currentTimeMillis() - extractStart) + " ms");
+        return staging;
+    }
 
-        telegramBotService.sendServerStartingNotification();
-        return restoreFuture;
+    // Каждый верхний элемент бэкапа (world, plugins, server.properties...) меняется целиком переименованием,
+    // поэтому файлы, которых не было в бэкапе, не остаются внутри восстановленных папок.
+    // Заменённые элементы переезжают в previousDirectory до следующего восстановления.
+    private void swapIn(Path staging) throws IOException {
+        Path serverDir = serverDirectory();
+        List<Path> handlerDirectories = handlerDirectories();
+        Path previous = previousDirectory();
+        if (Files.exists(previous)) {
+            FileUtils.deleteDirectory(previous.toFile());
+        }
+        Files.createDirectories(previous);
+
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(staging)) {
+            for (Path source : entries) {
+                String name = source.getFileName().toString();
+                Path live = serverDir.resolve(name);
+                // Открытые файлы журнала, метрик и игроков остаются на месте, как и папка бэкапов
+                if (handlerDirectories.stream().anyMatch(directory -> directory.startsWith(live))) {
+                    continue;
+                }
+                names.add(name);
+            }
+        }
+
+        long swapStart = System.currentTimeMillis();
+        List<String> swapped = new ArrayList<>();
+        try {
+            for (String name : names) {
+                Path live = serverDir.resolve(name);
+                swapped.add(name);
+                if (Files.exists(live, LinkOption.NOFOLLOW_LINKS)) {
+                    Files.move(live, previous.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+                }
+                Files.move(staging.resolve(name), live, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Возвращаем на место всё, что успели заменить, в обратном порядке
+            for (int i = swapped.size() - 1; i >= 0; i--) {
+                String name = swapped.get(i);
+                Path live = serverDir.resolve(name);
+                try {
+                    if (Files.exists(previous.resolve(name), LinkOption.NOFOLLOW_LINKS)) {
+                        if (Files.exists(live, LinkOption.NOFOLLOW_LINKS)) {
+                            Files.move(live, staging.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+                        }
+                        Files.move(previous.resolve(name), live, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                } catch (IOException rollbackError) {
+                    e.addSuppressed(rollbackError);
+                }
+            }
+            throw e;
+        }
+        Files.write(previous.resolve(RESTORED_ENTRIES), names, StandardCharsets.UTF_8);
+        serverService.sendToConsole("Swapped " + names.size() + " server entries in "
+                + (System.currentTimeMillis() - swapStart) + " ms");
     }
 
-    private void performBackupRestoration(String backupName, String type) throws IOException {
-        String backupDir = serverProperties.getBackup().getDirectory() + File.separator + type;
-        Path zipPath = Paths.get(backupDir, backupName);
-        String serverDir = new File(new File(serverProperties.getJar()).getPath()).getAbsoluteFile().getParent();
+    private Path restoreStagingDirectory() {
+        Path serverDir = serverDirectory();
+        return serverDir.resolveSibling(serverDir.getFileName() + RESTORE_STAGING_SUFFIX);
+    }
+
+    private Path previousDirectory() {
+        Path serverDir = serverDirectory();
+        return serverDir.resolveSibling(serverDir.getFileName() + RESTORE_PREVIOUS_SUFFIX);
+    }
 
-        if (!Files.exists(zipPath)) {
-            throw new FileNotFoundException("Backup file not found: " + zipPath);
+    // Содержимое одной папки бэкапа. ZIP открывается через ZipFile: читается только центральный каталог,
+    // а не весь архив, поэтому список строится за миллисекунды даже для многогигабайтных бэкапов
+    public List<BackupEntry> listBackupEntries(String backupName, String type, String prefix) throws IOException {
+        String directory = prefix == null ? "" : prefix.replace('\\', '/').replaceAll("^/+", "");
+        if (!directory.isEmpty() && !directory.endsWith("/")) {
+            directory += "/";
         }
+        String finalDirectory = directory;
+        Map<String, BackupEntry> children = new HashMap<>();
+        forEachBackupEntry(backupPath(backupName, type), (name, size, modified) -> {
+            if (!name.startsWith(finalDirectory) || name.length() == finalDirectory.length()) {
+                return;
+            }
+            String rest = name.substring(finalDirectory.length());
+            int slash = rest.indexOf('/');
+            if (slash < 0) {
+                children.put(rest, new BackupEntry(rest, name, false, size, 1, modified));
+                return;
+            }
+            String child = rest.substring(0, slash);
+            BackupEntry entry = new BackupEntry(child, finalDirectory + child + "/", true, size,
+                    slash == rest.length() - 1 ? 0 : 1, modified);
+            children.merge(child + "/", entry, (a, b) -> new BackupEntry(a.name(), a.path(), true,
+                    a.size() + b.size(), a.files() + b.files(), Math.max(a.modified(), b.modified())));
+        });
+        return children.values().stream()
+                .sorted(Comparator.comparing((BackupEntry entry) -> !entry.directory()).thenComparing(BackupEntry::name))
+                .toList();
+    }
 
-        Path tempDir = Files.createTempDirectory("mc_restore_");
-        try {
-            try (ZipInputStream zis = new ZipInputStream(new FileInputStream(zipPath.toFile()))) {
-                ZipEntry entry;
-                while ((entry = zis.getNextEntry()) != null) {
-                    Path filePath = tempDir.resolve(entry.getName());
-                    Files.createDirectories(filePath.getParent());
-                    if (!entry.isDirectory()) {
-                        Files.copy(zis, filePath, StandardCopyOption.REPLACE_EXISTING);
+    // Восстановление только выбранных файлов или папок (например world_nether/ или world/playerdata/<uuid>.dat).
+    // Каждый файл пишется рядом с оригиналом и заменяет его переименованием; остальные файлы сервера не трогаются
+    public CompletableFuture<Integer> restoreBackupEntries(String backupName, String type, List<String> paths) {
+        CompletableFuture<Void> restoreFuture = new CompletableFuture<>();
+        AtomicInteger restored = new AtomicInteger();
+        List<String> selected = paths.stream()
+                .map(path -> path.replace('\\', '/').replaceAll("^/+", ""))
+                .filter(path -> !path.isBlank())
+                .toList();
+
+        scheduler.execute(() -> {
+            Path backupPath;
+            try {
+                backupPath = backupPath(backupName, type);
+                if (selected.isEmpty()) {
+                    throw new IllegalArgumentException("No backup entries selected");
+                }
+                // Проверяем выбор до остановки сервера
+                AtomicInteger matched = new AtomicInteger();
+                forEachBackupEntry(backupPath, (name, size, modified) -> {
+                    if (matchesSelection(name, selected)) {
+                        matched.incrementAndGet();
                     }
+                });
+                if (matched.get() == 0) {
+                    throw new FileNotFoundException("Selected entries are not in backup " + backupName);
                 }
+            } catch (Exception e) {
+                handleRestoreError(e, backupName);
+                restoreFuture.completeExceptionally(e);
+                return;
             }
 
-            Files.walk(tempDir)
-                    .forEach(source -> {
-                        try {
-                            Path destination = Paths.get(serverDir, tempDir.relativize(source).toString());
-                            if (Files.isDirectory(source)) {
-                                Files.createDirectories(destination);
-                            } else {
-                                Files.copy(source, destination, StandardCopyOption.REPLACE_EXISTING);
+            withServerStopped(() -> {
+                long restoreStart = System.currentTimeMillis();
+                Path serverDir = serverDirectory();
+                if (backupName.endsWith(BackupManifest.EXTENSION)) {
+                    IncrementalBackup incremental = new IncrementalBackup(chunkStore(), 1, this::reportBackupFileError);
+                    for (BackupManifest.FileEntry entry : BackupManifest.read(backupPath).files()) {
+                        if (matchesSelection(entry.path(), selected)) {
+                            replaceServerFile(serverDir, entry.path(), temp -> incremental.restoreFile(entry, temp));
+                            restored.incrementAndGet();
+                        }
+                    }
+                } else {
+                    try (ZipFile zip = new ZipFile(backupPath.toFile(), StandardCharsets.UTF_8)) {
+                        Enumeration<? extends ZipEntry> entries = zip.entries();
+                        while (entries.hasMoreElements()) {
+                            ZipEntry entry = entries.nextElement();
+                            if (entry.isDirectory() || !matchesSelection(entry.getName(), selected)) {
+                                continue;
                             }
-                        } catch (IOException e) {
-                            throw new UncheckedIOException(e);
+                            replaceServerFile(serverDir, entry.getName(), temp -> {
+                                try (InputStream in = zip.getInputStream(entry)) {
+                                    Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+                                }
+                                if (entry.getLastModifiedTime() != null) {
+                                    Files.setLastModifiedTime(temp, entry.getLastModifiedTime());
+                                }
+                            });
+                            restored.incrementAndGet();
                         }
-                    });
+                    }
+                }
+                serverService.sendToConsole("Restored " + restored.get() + " files from backup " + backupName + " in "
+                        + (System.currentTimeMillis() - restoreStart) + " ms: " + String.join(", ", selected));
+            }, restoreFuture, e -> handleRestoreError(e, backupName));
+        });
+        return restoreFuture.thenApply(v -> restored.get());
+    }
+
+    private interface EntryVisitor {
+        void visit(String name, long size, long modified);
+    }
+
+    private interface EntryWriter {
+        void write(Path file) throws IOException;
+    }
+
+    private void forEachBackupEntry(Path backupPath, EntryVisitor visitor) throws IOException {
+        if (backupPath.getFileName().toString().endsWith(BackupManifest.EXTENSION)) {
+            for (BackupManifest.FileEntry entry : BackupManifest.read(backupPath).files()) {
+                visitor.visit(entry.path(), entry.size(), entry.modified());
+            }
+            return;
+        }
+        try (ZipFile zip = new ZipFile(backupPath.toFile(), StandardCharsets.UTF_8)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                visitor.visit(entry.getName(), Math.max(0, entry.getSize()), entry.getTime());
+            }
+        }
+    }
 
-            serverService.sendToConsole("Backup restored: " + backupName);
-            telegramBotService.sendServerBackupRestoredNotification(backupName);
+    // Запись во временный файл рядом с целью и замена переименованием: сервер не увидит наполовину записанный файл
+    private void replaceServerFile(Path serverDir, String name, EntryWriter writer) throws IOException {
+        Path target = serverDir.resolve(name).normalize();
+        if (!target.startsWith(serverDir) || isHandlerPath(target)) {
+            throw new IOException("Backup entry is outside of server directory or belongs to the handler: " + name);
+        }
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".restore-tmp");
+        try {
+            writer.write(temp);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
         } finally {
-            try {
-                FileUtils.deleteDirectory(tempDir.toFile());
-            } catch (IOException e) {
-                serverService.sendToConsole("Warning: Failed to delete temp directory: " + e.getMessage());
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static boolean matchesSelection(String name, List<String> selected) {
+        for (String path : selected) {
+            if (name.equals(path) || name.startsWith(path.endsWith("/") ? path : path + "/")) {
+                return true;
             }
         }
+        return false;
+    }
+
+    private Path backupPath(String backupName, String type) throws FileNotFoundException {
+        Path backupPath = backupRoot().resolve(type).resolve(backupName).normalize();
+        if (!backupPath.startsWith(backupRoot()) || !Files.isRegularFile(backupPath)) {
+            throw new FileNotFoundException("Backup file not found: " + backupPath);
+        }
+        return backupPath;
     }
 
     private void handleRestoreError(Exception e, String backupName) {
@@ -384,12 +1005,15 @@ public class BackupService {
 
         Files.delete(backupPath);
         serverService.sendToConsole("Backup deleted: " + backupName);
+        if (backupName.endsWith(BackupManifest.EXTENSION)) {
+            collectUnreferencedChunks();
+        }
     }
 
     private void cleanupOldBackups(String type, int maxBackups) throws IOException {
         String backupDir = String.valueOf(Paths.get(serverProperties.getBackup().getDirectory(), type));
 
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(backupDir), "backup_*.zip")) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(backupDir), BACKUP_GLOB)) {
             List<Path> backups = new ArrayList<>();
             stream.forEach(backups::add);
 
@@ -402,9 +1026,14 @@ public class BackupService {
                     }
                 }));
 
+                boolean manifestsDeleted = false;
                 for (int i = 0; i < backups.size() - maxBackups; i++) {
                     Files.delete(backups.get(i));
                     serverService.sendToConsole("Deleted old backup: " + backups.get(i).getFileName());
+                    manifestsDeleted |= backups.get(i).getFileName().toString().endsWith(BackupManifest.EXTENSION);
+                }
+                if (manifestsDeleted) {
+                    collectUnreferencedChunks();
                 }
             }
         }
@@ -415,7 +1044,7 @@ public class BackupService {
         List<String> backups = new ArrayList<>();
 
         if(Files.exists(backupDirPath)) {
-            try (DirectoryStream<Path> stream = Files.newDirectoryStream(backupDirPath, "backup_*.zip")) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(backupDirPath, BACKUP_GLOB)) {
                 for (Path path : stream) {
                     backups.add(path.getFileName().toString());
                 }
@@ -90,8 +90,54 @@ public class ConfigFileService {
         backupMap.put("weeklyMaxBackups", serverProperties.getBackup().getWeeklyMaxBackups());
         backupMap.put("monthlyEnabled", serverProperties.getBackup().isMonthlyEnabled());
         backupMap.put("monthlyMaxBackups", serverProperties.getBackup().getMonthlyMaxBackups());
+        backupMap.put("threads", serverProperties.getBackup().getThreads());
+        backupMap.put("incremental", serverProperties.getBackup().isIncremental());
+        backupMap.put("hot", serverProperties.getBackup().isHot());
+        backupMap.put("saveTimeoutSeconds", serverProperties.getBackup().getSaveTimeoutSeconds());
 
         serverMap.put("backup", backupMap);
+
+        // Console
+        Map<String, Object> consoleMap = new LinkedHashMap<>();
+        consoleMap.put("broadcastIntervalMs", serverProperties.getConsole().getBroadcastIntervalMs());
+        consoleMap.put("broadcastMaxLines", serverProperties.getConsole().getBroadcastMaxLines());
+        consoleMap.put("historySize", serverProperties.getConsole().getHistorySize());
+        consoleMap.put("replayPageSize", serverProperties.getConsole().getReplayPageSize());
+        consoleMap.put("replayLimit", serverProperties.getConsole().getReplayLimit());
+        consoleMap.put("ruleSets", serverProperties.getConsole().getRuleSets());
+        consoleMap.put("journalEnabled", serverProperties.getConsole().isJournalEnabled());
+        consoleMap.put("journalDirectory", serverProperties.getConsole().getJournalDirectory());
+        consoleMap.put("journalSegmentSizeMb", serverProperties.getConsole().getJournalSegmentSizeMb());
+        consoleMap.put("journalRetentionMb", serverProperties.getConsole().getJournalRetentionMb());
+        consoleMap.put("journalRetentionDays", serverProperties.getConsole().getJournalRetentionDays());
+        consoleMap.put("searchEnabled", serverProperties.getConsole().isSearchEnabled());
+        consoleMap.put("searchMaxLines", serverProperties.getConsole().getSearchMaxLines());
+        consoleMap.put("searchGenerationLines", serverProperties.getConsole().getSearchGenerationLines());
+        consoleMap.put("sendBufferSizeKb", serverProperties.getConsole().getSendBufferSizeKb());
+        consoleMap.put("sendTimeLimitMs", serverProperties.getConsole().getSendTimeLimitMs());
+        consoleMap.put("maxPendingFrames", serverProperties.getConsole().getMaxPendingFrames());
+        consoleMap.put("commandTimeoutMs", serverProperties.getConsole().getCommandTimeoutMs());
+
+        serverMap.put("console", consoleMap);
+
+        // Metrics
+        Map<String, Object> metricsMap = new LinkedHashMap<>();
+        metricsMap.put("directory", serverProperties.getMetrics().getDirectory());
+        metricsMap.put("persistIntervalSec", serverProperties.getMetrics().getPersistIntervalSec());
+        metricsMap.put("rawCapacity", serverProperties.getMetrics().getRawCapacity());
+        metricsMap.put("minuteCapacity", serverProperties.getMetrics().getMinuteCapacity());
+        metricsMap.put("hourCapacity", serverProperties.getMetrics().getHourCapacity());
+        metricsMap.put("processSamplingEnabled", serverProperties.getMetrics().isProcessSamplingEnabled());
+        metricsMap.put("processSampleIntervalMs", serverProperties.getMetrics().getProcessSampleIntervalMs());
+        metricsMap.put("statsMaxUpdatesPerSecond", serverProperties.getMetrics().getStatsMaxUpdatesPerSecond());
+
+        serverMap.put("metrics", metricsMap);
+
+        // Players
+        Map<String, Object> playersMap = new LinkedHashMap<>();
+        playersMap.put("directory", serverProperties.getPlayers().getDirectory());
+
+        serverMap.put("players", playersMap);
         configMap.put("server", serverMap);
 
         // Security
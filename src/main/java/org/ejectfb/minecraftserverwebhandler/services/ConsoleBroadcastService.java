@@ -0,0 +1,139 @@
+package org.ejectfb.minecraftserverwebhandler.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.ejectfb.minecraftserverwebhandler.config.ServerProperties;
+import org.ejectfb.minecraftserverwebhandler.dto.ConsoleLine;
+import org.ejectfb.minecraftserverwebhandler.metrics.ConsolePipelineMetrics;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Service
+public class ConsoleBroadcastService {
+    public static final String CONSOLE_TOPIC = "/topic/console";
+    public static final String CLEAR_COMMAND = "clear";
+    public static final String LINES_HEADER = "lines";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ServerProperties serverProperties;
+    private final ConsolePipelineMetrics pipelineMetrics;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("console-broadcast").daemon(true).factory());
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final Object lock = new Object();
+    private List<ConsoleLine> buffer = new ArrayList<>();
+    // Моменты чтения из stdout для строк буфера; два массива меняются местами вместе с буфером
+    private long[] readTimes = new long[256];
+    private long[] spareReadTimes = new long[256];
+    private int readTimeCount;
+
+    public ConsoleBroadcastService(SimpMessagingTemplate messagingTemplate, ServerProperties serverProperties,
+                                   ConsolePipelineMetrics pipelineMetrics) {
+        this.messagingTemplate = messagingTemplate;
+        this.serverProperties = serverProperties;
+        this.pipelineMetrics = pipelineMetrics;
+    }
+
+    @PostConstruct
+    public void init() {
+        long interval = Math.max(1, serverProperties.getConsole().getBroadcastIntervalMs());
+        executor.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public void publish(ConsoleLine line) {
+        publish(line, false, 0);
+    }
+
+    // readNanos - System.nanoTime() чтения строки из stdout, для задержки от чтения до отправки
+    public void publish(ConsoleLine line, long readNanos) {
+        publish(line, true, readNanos);
+    }
+
+    private void publish(ConsoleLine line, boolean timed, long readNanos) {
+        boolean full;
+        synchronized (lock) {
+            buffer.add(line);
+            if (timed) {
+                if (readTimeCount == readTimes.length) {
+                    readTimes = Arrays.copyOf(readTimes, readTimeCount * 2);
+                }
+                readTimes[readTimeCount++] = readNanos;
+            }
+            full = buffer.size() >= maxLines();
+        }
+
+        if (full && flushScheduled.compareAndSet(false, true)) {
+            executor.execute(this::flush);
+        }
+    }
+
+    public void clear() {
+        synchronized (lock) {
+            buffer.clear();
+            readTimeCount = 0;
+        }
+        executor.execute(() -> messagingTemplate.convertAndSend(CONSOLE_TOPIC, CLEAR_COMMAND));
+    }
+
+    // Одна рассылка на интервал или на broadcastMaxLines строк, что наступит раньше
+    private void flush() {
+        flushScheduled.set(false);
+
+        List<ConsoleLine> batch;
+        long[] batchReadTimes;
+        int batchReadTimeCount;
+        synchronized (lock) {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            batch = buffer;
+            buffer = new ArrayList<>();
+            batchReadTimes = readTimes;
+            batchReadTimeCount = readTimeCount;
+            readTimes = spareReadTimes;
+            readTimeCount = 0;
+        }
+        try {
+            // ServerService публикует строки в порядке номеров, а пачки уходят из одного потока - кадры не перемешиваются
+            int maxLines = maxLines();
+            for (int from = 0; from < batch.size(); from += maxLines) {
+                List<ConsoleLine> frame = batch.subList(from, Math.min(batch.size(), from + maxLines));
+                long started = System.nanoTime();
+                try {
+                    messagingTemplate.convertAndSend(CONSOLE_TOPIC, frame, Map.of(LINES_HEADER, frame.size()));
+                } catch (RuntimeException e) {
+                    // Исключение из периодической задачи отменило бы все следующие рассылки
+                    System.err.println("Failed to broadcast console frame: " + e.getMessage());
+                }
+                pipelineMetrics.send().record(System.nanoTime() - started);
+            }
+
+            // Строки пачки уходят подряд, поэтому сквозная задержка считается до отправки последнего кадра
+            long sent = System.nanoTime();
+            for (int i = 0; i < batchReadTimeCount; i++) {
+                pipelineMetrics.endToEnd().record(sent - batchReadTimes[i]);
+            }
+        } finally {
+            // flush выполняется только в потоке рассылки, поэтому запасной массив больше никто не трогает
+            spareReadTimes = batchReadTimes;
+        }
+    }
+
+    private int maxLines() {
+        return Math.max(1, serverProperties.getConsole().getBroadcastMaxLines());
+    }
+}
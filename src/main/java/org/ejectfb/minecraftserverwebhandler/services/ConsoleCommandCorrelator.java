@@ -0,0 +1,47 @@
+package org.ejectfb.minecraftserverwebhandler.services;
+
+import org.ejectfb.minecraftserverwebhandler.parsing.ConsoleEventType;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+// Ответ сервера на команду приходит отдельной строкой консоли: ожидания одного типа события
+// завершаются по очереди, в том порядке, в котором команды были отправлены
+@Service
+public class ConsoleCommandCorrelator {
+    private final Map<ConsoleEventType, Queue<CompletableFuture<String>>> waiters = new EnumMap<>(ConsoleEventType.class);
+
+    public ConsoleCommandCorrelator() {
+        for (ConsoleEventType type : ConsoleEventType.values()) {
+            waiters.put(type, new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    public CompletableFuture<String> expect(ConsoleEventType type, long timeoutMs) {
+        Queue<CompletableFuture<String>> queue = waiters.get(type);
+        CompletableFuture<String> future = new CompletableFuture<>();
+        queue.add(future);
+        future.orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((value, error) -> queue.remove(future));
+        return future;
+    }
+
+    public void complete(ConsoleEventType type, String value) {
+        Queue<CompletableFuture<String>> queue = waiters.get(type);
+        CompletableFuture<String> future;
+        while ((future = queue.poll()) != null) {
+            if (future.complete(value)) {
+                return;
+            }
+        }
+    }
+
+    public int getPendingCount() {
+        return waiters.values().stream().mapToInt(Queue::size).sum();
+    }
+}
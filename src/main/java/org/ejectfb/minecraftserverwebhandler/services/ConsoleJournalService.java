@@ -0,0 +1,568 @@
+package org.ejectfb.minecraftserverwebhandler.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.ejectfb.minecraftserverwebhandler.config.ServerProperties;
+import org.ejectfb.minecraftserverwebhandler.dto.ConsoleLine;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+@Service
+public class ConsoleJournalService {
+    // Запись: [длина текста][seq][timestamp][текст в UTF-8]
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES + Long.BYTES * 2;
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final int INDEX_INTERVAL = 64;
+    private static final int QUEUE_CAPACITY = 65536;
+    private static final int MAX_BATCH = 8192;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int LOOKUP_BUFFER_SIZE = 8 * 1024;
+    private static final long RETENTION_CHECK_INTERVAL_MS = 60_000;
+
+    private final ServerProperties serverProperties;
+    private final BlockingQueue<ConsoleLine> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final AtomicLong droppedLines = new AtomicLong();
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private Path directory;
+    private Thread writer;
+    private volatile boolean running;
+    private volatile long lastSequence;
+    private Segment activeSegment;
+    private FileChannel activeChannel;
+    private long lastRetentionCheck;
+
+    public ConsoleJournalService(ServerProperties serverProperties) {
+        this.serverProperties = serverProperties;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!serverProperties.getConsole().isJournalEnabled()) {
+            return;
+        }
+        try {
+            directory = Paths.get(serverProperties.getConsole().getJournalDirectory()).toAbsolutePath();
+            Files.createDirectories(directory);
+            recover();
+            running = true;
+            writer = Thread.ofPlatform().name("console-journal").daemon(true).start(this::run);
+        } catch (IOException e) {
+            System.err.println("Журнал консоли отключён: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void append(ConsoleLine line) {
+        if (running && !queue.offer(line)) {
+            droppedLines.incrementAndGet();
+        }
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    public long getDroppedLines() {
+        return droppedLines.get();
+    }
+
+    public long getSizeBytes() {
+        return segments.stream().mapToLong(segment -> segment.size).sum();
+    }
+
+    public boolean isEnabled() {
+        return running;
+    }
+
+    // Читает только нужные участки сегментов: разреженный индекс даёт позицию, дальше последовательное чтение
+    public List<ConsoleLine> read(long since, long fromTime, long toTime, int limit) throws IOException {
+        List<ConsoleLine> result = new ArrayList<>(Math.min(limit, 1024));
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+        for (Segment segment : segments) {
+            if (result.size() >= limit) {
+                break;
+            }
+            long size = segment.size;
+            if (size == 0 || segment.lastSeq <= since || segment.lastTimestamp < fromTime) {
+                continue;
+            }
+            if (segment.firstTimestamp > toTime) {
+                break;
+            }
+            try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+                if (!readSegment(channel, segment.findOffset(since + 1, fromTime), size, buffer,
+                        since, fromTime, toTime, limit, result)) {
+                    break;
+                }
+            } catch (NoSuchFileException e) {
+                // Сегмент удалён по сроку хранения во время чтения
+            }
+        }
+        return result;
+    }
+
+    public List<ConsoleLine> readSequences(long[] seqs) throws IOException {
+        List<ConsoleLine> result = new ArrayList<>(seqs.length);
+        if (!running) {
+            return result;
+        }
+        long[] sorted = seqs.clone();
+        Arrays.sort(sorted);
+        ByteBuffer buffer = ByteBuffer.allocate(LOOKUP_BUFFER_SIZE);
+        List<Segment> snapshot = List.copyOf(segments);
+        Segment current = null;
+        FileChannel channel = null;
+        try {
+            for (long seq : sorted) {
+                Segment segment = findSegment(snapshot, seq);
+                if (segment == null || seq > segment.lastSeq) {
+                    continue;
+                }
+                if (segment != current) {
+                    if (channel != null) {
+                        channel.close();
+                    }
+                    current = segment;
+                    channel = FileChannel.open(segment.path, StandardOpenOption.READ);
+                }
+                int before = result.size();
+                readSegment(channel, segment.findOffset(seq, Long.MAX_VALUE), segment.size, buffer,
+                        seq - 1, 0, Long.MAX_VALUE, before + 1, result);
+                if (result.size() > before && result.get(before).seq() != seq) {
+                    result.remove(before);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // Сегмент удалён по сроку хранения во время чтения
+        } finally {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+        return result;
+    }
+
+    private static Segment findSegment(List<Segment> snapshot, long seq) {
+        Segment found = null;
+        for (Segment segment : snapshot) {
+            if (segment.firstSeq > seq) {
+                break;
+            }
+            found = segment;
+        }
+        return found;
+    }
+
+    private boolean readSegment(FileChannel channel, long position, long size, ByteBuffer buffer,
+                                long since, long fromTime, long toTime, int limit, List<ConsoleLine> result) throws IOException {
+        buffer.clear();
+        long bufferStart = position;
+        while (bufferStart < size) {
+            buffer.limit((int) Math.min(buffer.capacity(), size - bufferStart));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, bufferStart + buffer.position()) < 0) {
+                    // Файл оказался короче зафиксированного размера
+                    return true;
+                }
+            }
+            buffer.flip();
+
+            while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+                int length = buffer.getInt(buffer.position());
+                if (length < 0 || RECORD_HEADER_SIZE + (long) length > size - bufferStart - buffer.position()) {
+                    // Повреждённая длина: дальше этого места сегмент не читается, как и при scan
+                    return true;
+                }
+                if (buffer.remaining() < RECORD_HEADER_SIZE + length) {
+                    break;
+                }
+                long seq = buffer.getLong(buffer.position() + Integer.BYTES);
+                long timestamp = buffer.getLong(buffer.position() + Integer.BYTES + Long.BYTES);
+                if (timestamp > toTime) {
+                    return false;
+                }
+                if (seq > since && timestamp >= fromTime) {
+                    String text = new String(buffer.array(), buffer.position() + RECORD_HEADER_SIZE, length, StandardCharsets.UTF_8);
+                    result.add(ConsoleLine.restore(seq, timestamp, text));
+                    if (result.size() >= limit) {
+                        return false;
+                    }
+                }
+                buffer.position(buffer.position() + RECORD_HEADER_SIZE + length);
+            }
+
+            bufferStart += buffer.position();
+            if (buffer.position() == 0) {
+                // Запись длиннее окна чтения - увеличиваем буфер под неё
+                int length = buffer.getInt(0);
+                buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+            }
+            buffer.clear();
+        }
+        return true;
+    }
+
+    private void run() {
+        List<ConsoleLine> batch = new ArrayList<>(MAX_BATCH);
+        while (running || !queue.isEmpty()) {
+            try {
+                ConsoleLine first = queue.poll(1, TimeUnit.SECONDS);
+                if (first != null) {
+                    // Всё, что накопилось за время предыдущего fsync, уходит одной группой
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    batch.sort(Comparator.comparingLong(ConsoleLine::seq));
+                    writeBatch(batch);
+                    batch.clear();
+                }
+                if (System.currentTimeMillis() - lastRetentionCheck > RETENTION_CHECK_INTERVAL_MS) {
+                    applyRetention();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (IOException e) {
+                droppedLines.addAndGet(batch.size());
+                batch.clear();
+                System.err.println("Ошибка записи журнала консоли: " + e.getMessage());
+                rollback();
+            }
+        }
+        closeActive();
+    }
+
+    private void writeBatch(List<ConsoleLine> batch) throws IOException {
+        long segmentBytes = Math.max(1, serverProperties.getConsole().getJournalSegmentSizeMb()) * 1024L * 1024L;
+        List<long[]> pendingIndex = new ArrayList<>();
+        Segment segment = activeSegment;
+        long position = segment != null ? segment.size : 0;
+
+        for (ConsoleLine line : batch) {
+            byte[] text = line.text().getBytes(StandardCharsets.UTF_8);
+            int recordSize = RECORD_HEADER_SIZE + text.length;
+
+            if (segment == null || (position > 0 && position + recordSize > segmentBytes)) {
+                flushWriteBuffer();
+                commit(segment, position, pendingIndex);
+                segment = rollSegment(line.seq());
+                position = 0;
+            }
+            if (writeBuffer.remaining() < recordSize) {
+                flushWriteBuffer();
+            }
+
+            if (segment.recordsSinceIndex++ % INDEX_INTERVAL == 0) {
+                pendingIndex.add(new long[]{line.seq(), line.timestamp(), position});
+            }
+            if (recordSize > writeBuffer.capacity()) {
+                activeChannel.write(ByteBuffer.allocate(recordSize)
+                        .putInt(text.length).putLong(line.seq()).putLong(line.timestamp()).put(text).flip());
+            } else {
+                writeBuffer.putInt(text.length).putLong(line.seq()).putLong(line.timestamp()).put(text);
+            }
+            position += recordSize;
+            segment.pendingLastSeq = line.seq();
+            segment.pendingLastTimestamp = line.timestamp();
+        }
+        flushWriteBuffer();
+        commit(segment, position, pendingIndex);
+    }
+
+    private void flushWriteBuffer() throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            activeChannel.write(writeBuffer);
+        }
+        writeBuffer.clear();
+    }
+
+    // Данные становятся видны читателям только после fsync
+    private void commit(Segment segment, long position, List<long[]> pendingIndex) throws IOException {
+        if (segment == null || position == segment.size) {
+            return;
+        }
+        activeChannel.force(false);
+        for (long[] entry : pendingIndex) {
+            segment.addIndex(entry[0], entry[1], entry[2]);
+        }
+        pendingIndex.clear();
+        if (segment.size == 0) {
+            segment.firstTimestamp = segment.indexTimestamp(0);
+        }
+        segment.lastSeq = segment.pendingLastSeq;
+        segment.lastTimestamp = segment.pendingLastTimestamp;
+        segment.size = position;
+        lastSequence = Math.max(lastSequence, segment.lastSeq);
+    }
+
+    // Незафиксированная часть группы отрезается, чтобы следующая группа легла сразу за последней
+    // зафиксированной записью и смещения в индексе совпадали с файлом
+    private void rollback() {
+        writeBuffer.clear();
+        if (activeChannel == null) {
+            return;
+        }
+        try {
+            activeChannel.truncate(activeSegment.size);
+            activeChannel.position(activeSegment.size);
+            // Следующая запись получает точку индекса
+            activeSegment.recordsSinceIndex = 0;
+        } catch (IOException e) {
+            System.err.println("Сегмент журнала закрыт после ошибки записи: " + e.getMessage());
+            closeActive();
+        }
+    }
+
+    private Segment rollSegment(long firstSeq) throws IOException {
+        closeActive();
+        Path path = directory.resolve(String.format("%020d%s", firstSeq, SEGMENT_SUFFIX));
+        activeChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        activeSegment = new Segment(path, firstSeq);
+        segments.add(activeSegment);
+        applyRetention();
+        return activeSegment;
+    }
+
+    private void closeActive() {
+        if (activeChannel == null) {
+            return;
+        }
+        try {
+            activeChannel.close();
+            if (activeSegment.size > 0) {
+                activeSegment.writeIndex(indexPath(activeSegment.path));
+            }
+        } catch (IOException e) {
+            System.err.println("Ошибка закрытия сегмента журнала: " + e.getMessage());
+        }
+        activeChannel = null;
+        activeSegment = null;
+    }
+
+    private void applyRetention() {
+        lastRetentionCheck = System.currentTimeMillis();
+        long maxBytes = Math.max(1, serverProperties.getConsole().getJournalRetentionMb()) * 1024L * 1024L;
+        long minTimestamp = lastRetentionCheck - TimeUnit.DAYS.toMillis(Math.max(1, serverProperties.getConsole().getJournalRetentionDays()));
+        long total = getSizeBytes();
+
+        while (segments.size() > 1) {
+            Segment oldest = segments.get(0);
+            if (oldest == activeSegment || (total <= maxBytes && oldest.lastTimestamp >= minTimestamp)) {
+                break;
+            }
+            segments.remove(0);
+            total -= oldest.size;
+            try {
+                Files.deleteIfExists(oldest.path);
+                Files.deleteIfExists(indexPath(oldest.path));
+            } catch (IOException e) {
+                System.err.println("Не удалось удалить сегмент журнала " + oldest.path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+
+        for (int i = 0; i < files.size(); i++) {
+            Path path = files.get(i);
+            String name = path.getFileName().toString();
+            Segment segment = new Segment(path, Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+            boolean last = i == files.size() - 1;
+            if (last || !segment.readIndex(indexPath(path), Files.size(path))) {
+                scan(segment);
+            }
+            if (segment.size == 0) {
+                Files.deleteIfExists(path);
+                Files.deleteIfExists(indexPath(path));
+                continue;
+            }
+            segments.add(segment);
+            lastSequence = Math.max(lastSequence, segment.lastSeq);
+        }
+
+        // Последний сегмент дописывается дальше, если в нём есть место
+        Segment tail = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        long segmentBytes = Math.max(1, serverProperties.getConsole().getJournalSegmentSizeMb()) * 1024L * 1024L;
+        if (tail != null && tail.size < segmentBytes) {
+            Files.deleteIfExists(indexPath(tail.path));
+            activeChannel = FileChannel.open(tail.path, StandardOpenOption.WRITE);
+            activeChannel.position(tail.size);
+            activeSegment = tail;
+        }
+    }
+
+    // Восстанавливает индекс и обрезает недописанную последнюю запись
+    private void scan(Segment segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long fileSize = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+            long position = 0;
+            while (position + RECORD_HEADER_SIZE <= fileSize) {
+                header.clear();
+                channel.read(header, position);
+                int length = header.getInt(0);
+                if (length < 0 || position + RECORD_HEADER_SIZE + length > fileSize) {
+                    break;
+                }
+                long seq = header.getLong(Integer.BYTES);
+                long timestamp = header.getLong(Integer.BYTES + Long.BYTES);
+                if (segment.recordsSinceIndex++ % INDEX_INTERVAL == 0) {
+                    segment.addIndex(seq, timestamp, position);
+                }
+                if (position == 0) {
+                    segment.firstTimestamp = timestamp;
+                }
+                segment.lastSeq = Math.max(segment.lastSeq, seq);
+                segment.lastTimestamp = Math.max(segment.lastTimestamp, timestamp);
+                position += RECORD_HEADER_SIZE + length;
+            }
+            if (position < fileSize) {
+                channel.truncate(position);
+            }
+            segment.size = position;
+        }
+    }
+
+    private static Path indexPath(Path segmentPath) {
+        String name = segmentPath.getFileName().toString();
+        return segmentPath.resolveSibling(name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + INDEX_SUFFIX);
+    }
+
+    static final class Segment {
+        final Path path;
+        final long firstSeq;
+        volatile long lastSeq;
+        volatile long firstTimestamp;
+        volatile long lastTimestamp;
+        volatile long size;
+        long pendingLastSeq;
+        long pendingLastTimestamp;
+        int recordsSinceIndex;
+        private long[] indexSeqs = new long[64];
+        private long[] indexTimestamps = new long[64];
+        private long[] indexOffsets = new long[64];
+        private int indexCount;
+
+        Segment(Path path, long firstSeq) {
+            this.path = path;
+            this.firstSeq = firstSeq;
+        }
+
+        synchronized void addIndex(long seq, long timestamp, long offset) {
+            if (indexCount == indexSeqs.length) {
+                indexSeqs = Arrays.copyOf(indexSeqs, indexCount * 2);
+                indexTimestamps = Arrays.copyOf(indexTimestamps, indexCount * 2);
+                indexOffsets = Arrays.copyOf(indexOffsets, indexCount * 2);
+            }
+            indexSeqs[indexCount] = seq;
+            indexTimestamps[indexCount] = timestamp;
+            indexOffsets[indexCount] = offset;
+            indexCount++;
+        }
+
+        synchronized long indexTimestamp(int i) {
+            return indexTimestamps[i];
+        }
+
+        // Последняя точка индекса, не дальше искомых seq и времени
+        synchronized long findOffset(long seq, long timestamp) {
+            int low = 0;
+            int high = indexCount - 1;
+            int found = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (indexSeqs[mid] <= seq && indexTimestamps[mid] <= timestamp) {
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return found < 0 ? 0 : indexOffsets[found];
+        }
+
+        synchronized void writeIndex(Path indexPath) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * 4 + Integer.BYTES + indexCount * Long.BYTES * 3);
+            buffer.putLong(size).putLong(lastSeq).putLong(firstTimestamp).putLong(lastTimestamp).putInt(indexCount);
+            for (int i = 0; i < indexCount; i++) {
+                buffer.putLong(indexSeqs[i]).putLong(indexTimestamps[i]).putLong(indexOffsets[i]);
+            }
+            buffer.flip();
+            try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+
+        synchronized boolean readIndex(Path indexPath, long fileSize) throws IOException {
+            if (!Files.exists(indexPath)) {
+                return false;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(indexPath));
+            if (buffer.remaining() < Long.BYTES * 4 + Integer.BYTES) {
+                return false;
+            }
+            long indexedSize = buffer.getLong();
+            if (indexedSize != fileSize) {
+                return false;
+            }
+            long last = buffer.getLong();
+            long first = buffer.getLong();
+            long lastTime = buffer.getLong();
+            int count = buffer.getInt();
+            if (count < 0 || buffer.remaining() != count * Long.BYTES * 3) {
+                return false;
+            }
+            indexCount = 0;
+            for (int i = 0; i < count; i++) {
+                addIndex(buffer.getLong(), buffer.getLong(), buffer.getLong());
+            }
+            size = indexedSize;
+            lastSeq = last;
+            firstTimestamp = first;
+            lastTimestamp = lastTime;
+            return true;
+        }
+    }
+}
@@ -1,29 +1,115 @@
 package org.ejectfb.minecraftserverwebhandler.services;
 
+import org.ejectfb.minecraftserverwebhandler.config.ServerProperties;
+import org.ejectfb.minecraftserverwebhandler.dto.ConsoleLine;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 @Service
 public class ConsoleLogService {
-    private final List<String> logs = Collections.synchronizedList(new ArrayList<>());
-    private static final int MAX_LOG_SIZE = 500;
+    private final AtomicReferenceArray<ConsoleLine> ring;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong nextSeq;
+    private final ConsoleJournalService journal;
+    private final ConsoleSearchService search;
+    private volatile long clearedBefore;
 
-    public synchronized void addLog(String message) {
-        logs.add(message);
-        if (logs.size() > MAX_LOG_SIZE) {
-            logs.subList(0, 100).clear();
+    public ConsoleLogService(ServerProperties serverProperties, ConsoleJournalService journal, ConsoleSearchService search) {
+        this.journal = journal;
+        this.search = search;
+        // Нумерация продолжается после журнала, чтобы номера строк оставались уникальными между перезапусками
+        this.nextSeq = new AtomicLong(journal.getLastSequence() + 1);
+        this.clearedBefore = nextSeq.get();
+        int requested = Math.max(2, serverProperties.getConsole().getHistorySize());
+        this.capacity = Integer.highestOneBit(requested - 1) << 1;
+        this.mask = capacity - 1;
+        this.ring = new AtomicReferenceArray<>(capacity);
+    }
+
+    // Слот перезаписывается только строкой с большим номером, поэтому конкурентные писатели не теряют свежие строки
+    public ConsoleLine addLog(CharSequence message) {
+        ConsoleLine line = ConsoleLine.parse(nextSeq.getAndIncrement(), System.currentTimeMillis(), message);
+        journal.append(line);
+        search.append(line);
+        int index = (int) (line.seq() & mask);
+        ConsoleLine current;
+        do {
+            current = ring.get(index);
+            if (current != null && current.seq() > line.seq()) {
+                return line;
+            }
+        } while (!ring.compareAndSet(index, current, line));
+        return line;
+    }
+
+    public List<ConsoleLine> getLogs(long since, int limit) {
+        long head = nextSeq.get();
+        long from = Math.max(Math.max(since + 1, head - capacity), clearedBefore);
+        int size = (int) Math.max(0, Math.min(Math.min(limit, capacity), head - from));
+        List<ConsoleLine> result = new ArrayList<>(size);
+
+        for (long seq = from; seq < head && result.size() < size; seq++) {
+            ConsoleLine line = ring.get((int) (seq & mask));
+            if (line == null || line.seq() < seq) {
+                // Строка ещё не опубликована писателем - дальше не идём, чтобы не пропустить её
+                break;
+            }
+            if (line.seq() == seq) {
+                result.add(line);
+            }
+        }
+        return result;
+    }
+
+    // Строки по номерам в заданном порядке: сначала из памяти, остальные из журнала
+    public List<ConsoleLine> getLines(long[] seqs) throws IOException {
+        Map<Long, ConsoleLine> found = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (long seq : seqs) {
+            List<ConsoleLine> lines = getLogs(seq - 1, 1);
+            if (!lines.isEmpty() && lines.get(0).seq() == seq) {
+                found.put(seq, lines.get(0));
+            } else {
+                missing.add(seq);
+            }
         }
+        if (!missing.isEmpty()) {
+            for (ConsoleLine line : journal.readSequences(missing.stream().mapToLong(Long::longValue).toArray())) {
+                found.put(line.seq(), line);
+            }
+        }
+
+        List<ConsoleLine> result = new ArrayList<>(seqs.length);
+        for (long seq : seqs) {
+            ConsoleLine line = found.get(seq);
+            if (line != null) {
+                result.add(line);
+            }
+        }
+        return result;
+    }
+
+    public List<ConsoleLine> getTail(int limit) {
+        return getLogs(getLastSequence() - limit, limit);
+    }
+
+    public long getLastSequence() {
+        return nextSeq.get() - 1;
     }
 
-    public synchronized List<String> getLogs() {
-        return new ArrayList<>(logs);
+    public int getCapacity() {
+        return capacity;
     }
 
-    public synchronized void clearLogs() {
-        logs.clear();
+    public void clearLogs() {
+        clearedBefore = nextSeq.get();
     }
 }
\ No newline at end of file
@@ -0,0 +1,142 @@
+package org.ejectfb.minecraftserverwebhandler.services;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Читает stdout процесса в переиспользуемые буферы и отдаёт строки как представления над char[].
+// String создаётся только если потребитель вызовет toString(), и потом переиспользуется всеми потребителями.
+// Буфер байтов в куче: поток процесса читается через Channels.newChannel, который всё равно копирует через byte[].
+public class ConsoleOutputReader {
+    private static final int BYTE_BUFFER_SIZE = 64 * 1024;
+    private static final int CHAR_BUFFER_SIZE = 64 * 1024;
+
+    private final ByteBuffer bytes = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+    private final char[] chars = new char[CHAR_BUFFER_SIZE];
+    private final CharBuffer charBuffer = CharBuffer.wrap(chars);
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final LineView view = new LineView();
+    private final AtomicLong bytesRead = new AtomicLong();
+    // System.nanoTime() после последнего read(); читается потребителем в том же потоке
+    private long lastReadNanos;
+
+    public void read(ReadableByteChannel channel, Consumer<CharSequence> consumer) throws IOException {
+        bytes.clear();
+        charBuffer.clear();
+        decoder.reset();
+
+        int read;
+        while ((read = channel.read(bytes)) != -1) {
+            lastReadNanos = System.nanoTime();
+            bytesRead.addAndGet(read);
+            bytes.flip();
+            decode(false, consumer);
+            bytes.compact();
+        }
+
+        lastReadNanos = System.nanoTime();
+        bytes.flip();
+        decode(true, consumer);
+        decoder.flush(charBuffer);
+        emitLines(consumer, true);
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public long getLastReadNanos() {
+        return lastReadNanos;
+    }
+
+    private void decode(boolean endOfInput, Consumer<CharSequence> consumer) {
+        while (true) {
+            CoderResult result = decoder.decode(bytes, charBuffer, endOfInput);
+            emitLines(consumer, false);
+            if (result.isUnderflow()) {
+                return;
+            }
+        }
+    }
+
+    private void emitLines(Consumer<CharSequence> consumer, boolean endOfInput) {
+        int end = charBuffer.position();
+        int lineStart = 0;
+
+        for (int i = 0; i < end; i++) {
+            if (chars[i] == '\n') {
+                emit(consumer, lineStart, i);
+                lineStart = i + 1;
+            }
+        }
+
+        // Строка длиннее буфера или хвост без перевода строки в конце потока отдаются как есть
+        if (lineStart < end && (endOfInput || (lineStart == 0 && end >= chars.length - 1))) {
+            emit(consumer, lineStart, end);
+            lineStart = end;
+        }
+
+        int remaining = end - lineStart;
+        if (lineStart > 0 && remaining > 0) {
+            System.arraycopy(chars, lineStart, chars, 0, remaining);
+        }
+        charBuffer.position(remaining);
+    }
+
+    private void emit(Consumer<CharSequence> consumer, int start, int end) {
+        if (end > start && chars[end - 1] == '\r') {
+            end--;
+        }
+        view.reset(chars, start, end - start);
+        consumer.accept(view);
+    }
+
+    private static final class LineView implements CharSequence {
+        private char[] array;
+        private int offset;
+        private int length;
+        private String string;
+
+        void reset(char[] array, int offset, int length) {
+            this.array = array;
+            this.offset = offset;
+            this.length = length;
+            this.string = null;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return array[offset + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            if (string == null) {
+                string = new String(array, offset, length);
+            }
+            return string;
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package org.ejectfb.minecraftserverwebhandler.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.ejectfb.minecraftserverwebhandler.config.ServerProperties;
+import org.ejectfb.minecraftserverwebhandler.dto.ConsoleLine;
+import org.ejectfb.minecraftserverwebhandler.parsing.ConsoleLineHeader;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Service
+public class ConsoleSearchService {
+    private static final int QUEUE_CAPACITY = 65536;
+    private static final int MAX_BATCH = 4096;
+    private static final int MIN_TOKEN_LENGTH = 2;
+    private static final int MAX_TOKEN_LENGTH = 64;
+    private static final int REBUILD_PAGE_SIZE = 8192;
+    private static final String[] LEVELS = ConsoleLineHeader.levels();
+
+    public record SearchResult(long[] seqs, boolean hasMore) {
+    }
+
+    private final ServerProperties serverProperties;
+    private final ConsoleJournalService journal;
+    private final BlockingQueue<ConsoleLine> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Deque<Generation> generations = new ArrayDeque<>();
+    private final AtomicLong droppedLines = new AtomicLong();
+    private final Set<String> lineTokens = new LinkedHashSet<>();
+    private Thread indexer;
+    private volatile boolean running;
+    private long indexedLines;
+
+    public ConsoleSearchService(ServerProperties serverProperties, ConsoleJournalService journal) {
+        this.serverProperties = serverProperties;
+        this.journal = journal;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!serverProperties.getConsole().isSearchEnabled()) {
+            return;
+        }
+        running = true;
+        indexer = Thread.ofPlatform().name("console-indexer").daemon(true).start(this::run);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (indexer != null) {
+            indexer.interrupt();
+        }
+    }
+
+    public void append(ConsoleLine line) {
+        if (running && !queue.offer(line)) {
+            droppedLines.incrementAndGet();
+        }
+    }
+
+    public boolean isEnabled() {
+        return running;
+    }
+
+    public long getIndexedLines() {
+        lock.readLock().lock();
+        try {
+            return indexedLines;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getDroppedLines() {
+        return droppedLines.get();
+    }
+
+    // Результаты от новых строк к старым; before - seq, с которого продолжать следующую страницу
+    public SearchResult search(String query, String level, String logger, long fromTime, long toTime, long before, int limit) {
+        List<String> tokens = tokenize(query == null ? "" : query, new ArrayList<>());
+        // Без слов индекс не может отфильтровать строки, и пустой фильтр вернул бы весь журнал
+        if (tokens.isEmpty() && query != null && !query.isBlank()) {
+            throw new IllegalArgumentException("Search query must contain a word or number of at least "
+                    + MIN_TOKEN_LENGTH + " characters");
+        }
+        int levelCode = level == null || level.isBlank() ? -1 : levelCode(level.trim().toUpperCase(Locale.ROOT));
+        if (level != null && !level.isBlank() && levelCode < 0) {
+            return new SearchResult(new long[0], false);
+        }
+        String loggerKey = logger == null || logger.isBlank() ? null : logger.trim().toLowerCase(Locale.ROOT);
+
+        long[] result = new long[limit];
+        int found = 0;
+        boolean hasMore = false;
+
+        lock.readLock().lock();
+        try {
+            Iterator<Generation> iterator = generations.descendingIterator();
+            while (iterator.hasNext() && !hasMore) {
+                Generation generation = iterator.next();
+                if (generation.count == 0 || generation.seqs[0] >= before
+                        || generation.maxTimestamp < fromTime || generation.minTimestamp > toTime) {
+                    continue;
+                }
+                int loggerId = -1;
+                if (loggerKey != null) {
+                    Integer id = generation.loggerIds.get(loggerKey);
+                    if (id == null) {
+                        continue;
+                    }
+                    loggerId = id;
+                }
+                int[] candidates = generation.match(tokens);
+                int candidateCount = candidates == null ? generation.count : candidates.length;
+
+                for (int i = candidateCount - 1; i >= 0; i--) {
+                    int ordinal = candidates == null ? i : candidates[i];
+                    long seq = generation.seqs[ordinal];
+                    long timestamp = generation.timestamps[ordinal];
+                    if (seq >= before || timestamp < fromTime || timestamp > toTime
+                            || (levelCode >= 0 && generation.levels[ordinal] != levelCode)
+                            || (loggerId >= 0 && generation.loggers[ordinal] != loggerId)) {
+                        continue;
+                    }
+                    if (found == limit) {
+                        hasMore = true;
+                        break;
+                    }
+                    result[found++] = seq;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new SearchResult(Arrays.copyOf(result, found), hasMore);
+    }
+
+    private void run() {
+        rebuild();
+        List<ConsoleLine> batch = new ArrayList<>(MAX_BATCH);
+        while (running) {
+            try {
+                ConsoleLine first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                lock.writeLock().lock();
+                try {
+                    for (ConsoleLine line : batch) {
+                        index(line);
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                batch.clear();
+                System.err.println("Ошибка индексации консоли: " + e.getMessage());
+            }
+        }
+    }
+
+    // Индекс живёт только в памяти, поэтому после перезапуска он заполняется последними строками журнала.
+    // Новые строки тем временем копятся в очереди: их номера больше последнего номера журнала
+    private void rebuild() {
+        long last = journal.getLastSequence();
+        long since = Math.max(0, last - Math.max(1, serverProperties.getConsole().getSearchMaxLines()));
+        long restored = 0;
+        try {
+            while (running && since < last) {
+                List<ConsoleLine> page = journal.read(since, 0, Long.MAX_VALUE, REBUILD_PAGE_SIZE);
+                if (page.isEmpty()) {
+                    break;
+                }
+                lock.writeLock().lock();
+                try {
+                    for (ConsoleLine line : page) {
+                        // Строки после last уже в очереди
+                        if (line.seq() <= last) {
+                            index(line);
+                            restored++;
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                since = page.get(page.size() - 1).seq();
+            }
+        } catch (IOException e) {
+            System.err.println("Не удалось восстановить поисковый индекс из журнала: " + e.getMessage());
+        }
+        if (restored > 0) {
+            System.out.println("Console search index restored from journal: " + restored + " lines");
+        }
+    }
+
+    private void index(ConsoleLine line) {
+        Generation generation = generations.peekLast();
+        if (generation == null || generation.count == generation.capacity()) {
+            if (generation != null) {
+                generation.seal();
+            }
+            generation = new Generation(Math.max(1024, serverProperties.getConsole().getSearchGenerationLines()));
+            generations.addLast(generation);
+            evict();
+        }
+
+        lineTokens.clear();
+        tokenize(line.text(), lineTokens);
+        generation.add(line.seq(), line.timestamp(), line.level() == null ? -1 : levelCode(line.level()),
+                line.logger(), lineTokens);
+        indexedLines++;
+    }
+
+    // Старые поколения выбрасываются целиком, поэтому память ограничена searchMaxLines
+    private void evict() {
+        long maxLines = Math.max(1, serverProperties.getConsole().getSearchMaxLines());
+        while (generations.size() > 1 && indexedLines > maxLines) {
+            indexedLines -= generations.removeFirst().count;
+        }
+    }
+
+    // Токены - буквенно-цифровые слова и числа в нижнем регистре; цветовые коды не индексируются
+    private static <C extends Collection<String>> C tokenize(CharSequence text, C tokens) {
+        StringBuilder token = new StringBuilder(MAX_TOKEN_LENGTH);
+        int length = text.length();
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            if (c == '\u001B') {
+                while (i < length && text.charAt(i) != 'm') {
+                    i++;
+                }
+                c = ' ';
+            } else if (c == '§') {
+                i++;
+                c = ' ';
+            }
+            if (Character.isLetterOrDigit(c) || c == '_') {
+                if (token.length() < MAX_TOKEN_LENGTH) {
+                    token.append(Character.toLowerCase(c));
+                }
+                continue;
+            }
+            if (token.length() >= MIN_TOKEN_LENGTH) {
+                tokens.add(token.toString());
+            }
+            token.setLength(0);
+        }
+        return tokens;
+    }
+
+    private static int levelCode(String level) {
+        for (int i = 0; i < LEVELS.length; i++) {
+            if (LEVELS[i].equals(level)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static final class Generation {
+        final long[] seqs;
+        final long[] timestamps;
+        final byte[] levels;
+        final int[] loggers;
+        final Map<String, Integer> loggerIds = new HashMap<>();
+        final Map<String, Posting> postings = new HashMap<>();
+        int count;
+        long minTimestamp = Long.MAX_VALUE;
+        long maxTimestamp = Long.MIN_VALUE;
+
+        Generation(int capacity) {
+            this.seqs = new long[capacity];
+            this.timestamps = new long[capacity];
+            this.levels = new byte[capacity];
+            this.loggers = new int[capacity];
+        }
+
+        int capacity() {
+            return seqs.length;
+        }
+
+        void add(long seq, long timestamp, int level, String logger, Set<String> tokens) {
+            int ordinal = count;
+            seqs[ordinal] = seq;
+            timestamps[ordinal] = timestamp;
+            levels[ordinal] = (byte) level;
+            loggers[ordinal] = logger == null ? -1
+                    : loggerIds.computeIfAbsent(logger.toLowerCase(Locale.ROOT), key -> loggerIds.size());
+            for (String token : tokens) {
+                postings.computeIfAbsent(token, key -> new Posting()).add(ordinal);
+            }
+            minTimestamp = Math.min(minTimestamp, timestamp);
+            maxTimestamp = Math.max(maxTimestamp, timestamp);
+            count++;
+        }
+
+        void seal() {
+            for (Posting posting : postings.values()) {
+                posting.trim();
+            }
+        }
+
+        // null - фильтра по словам нет, иначе отсортированные номера строк, содержащих все слова
+        int[] match(List<String> tokens) {
+            if (tokens.isEmpty()) {
+                return null;
+            }
+            Posting[] lists = new Posting[tokens.size()];
+            for (int i = 0; i < lists.length; i++) {
+                lists[i] = postings.get(tokens.get(i));
+                if (lists[i] == null) {
+                    return new int[0];
+                }
+            }
+            Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+
+            int[] result = lists[0].decode();
+            int resultSize = result.length;
+            for (int i = 1; i < lists.length && resultSize > 0; i++) {
+                resultSize = lists[i].retainAll(result, resultSize);
+            }
+            return Arrays.copyOf(result, resultSize);
+        }
+    }
+
+    // Номера строк поколения, разности в varint: частые слова занимают около байта на вхождение
+    static final class Posting {
+        private byte[] data = new byte[4];
+        private int length;
+        private int last = -1;
+        int size;
+
+        void add(int ordinal) {
+            int delta = ordinal - last;
+            last = ordinal;
+            size++;
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+            }
+            while ((delta & ~0x7F) != 0) {
+                data[length++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            data[length++] = (byte) delta;
+        }
+
+        void trim() {
+            data = Arrays.copyOf(data, length);
+        }
+
+        int[] decode() {
+            int[] result = new int[size];
+            int position = 0;
+            int value = -1;
+            for (int i = 0; i < size; i++) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[position++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                value += delta;
+                result[i] = value;
+            }
+            return result;
+        }
+
+        // Оставляет в candidates только номера из этого списка, возвращает новый размер
+        int retainAll(int[] candidates, int candidateCount) {
+            int position = 0;
+            int value = -1;
+            int decoded = 0;
+            int kept = 0;
+            for (int i = 0; i < candidateCount; i++) {
+                int candidate = candidates[i];
+                while (value < candidate && decoded < size) {
+                    int delta = 0;
+                    int shift = 0;
+                    byte b;
+                    do {
+                        b = data[position++];
+                        delta |= (b & 0x7F) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    value += delta;
+                    decoded++;
+                }
+                if (value == candidate) {
+                    candidates[kept++] = candidate;
+                } else if (value < candidate) {
+                    break;
+                }
+            }
+            return kept;
+        }
+    }
+}
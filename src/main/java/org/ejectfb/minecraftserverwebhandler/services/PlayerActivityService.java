@@ -0,0 +1,379 @@
+package org.ejectfb.minecraftserverwebhandler.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.ejectfb.minecraftserverwebhandler.config.ServerProperties;
+import org.ejectfb.minecraftserverwebhandler.dto.PlayerActivityPoint;
+import org.ejectfb.minecraftserverwebhandler.dto.PlayerSummary;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Входы и выходы игроков пишутся в файл только дописыванием; при старте файл читается один раз,
+// а запросы отвечают по индексам в памяти: итоги по игрокам, пики онлайна по часам, уникальные игроки по дням.
+// Формат записи: [byte тип][long время][int id игрока], имя игрока - отдельной записью NAME при первом появлении.
+@Service
+public class PlayerActivityService {
+    private static final String FILE_NAME = "events.bin";
+    private static final byte NAME = 0;
+    private static final byte JOIN = 1;
+    private static final byte LEAVE = 2;
+    private static final byte SERVER_STOP = 3;
+    private static final long HOUR_MS = 3_600_000L;
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final ServerProperties serverProperties;
+    private final Map<String, Integer> playerIds = new HashMap<>();
+    private final List<PlayerStats> players = new ArrayList<>();
+    // Номер часа от эпохи -> максимум игроков онлайн за этот час
+    private final TreeMap<Long, Integer> hourlyPeaks = new TreeMap<>();
+    // День (epochDay по локальной зоне) -> игроки, бывшие онлайн в этот день
+    private final TreeMap<Long, BitSet> dailyPlayers = new TreeMap<>();
+    private final BitSet online = new BitSet();
+    private int onlineCount;
+    private long lastEventTime;
+    private Path file;
+    private DataOutputStream out;
+
+    public PlayerActivityService(ServerProperties serverProperties) {
+        this.serverProperties = serverProperties;
+    }
+
+    @PostConstruct
+    public synchronized void init() {
+        try {
+            Path directory = Paths.get(serverProperties.getPlayers().getDirectory()).toAbsolutePath();
+            Files.createDirectories(directory);
+            file = directory.resolve(FILE_NAME);
+            long validLength = replay();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                // Хвост, оборванный при аварийной остановке, отрезаем
+                if (channel.size() > validLength) {
+                    channel.truncate(validLength);
+                }
+            }
+            out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(file, StandardOpenOption.APPEND)));
+            // Сессии, не закрытые до падения обработчика, закрываем временем последнего события
+            if (onlineCount > 0) {
+                append(SERVER_STOP, lastEventTime, -1);
+            }
+        } catch (IOException e) {
+            System.err.println("Ошибка открытия истории игроков: " + e.getMessage());
+            out = null;
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        serverStopped(System.currentTimeMillis());
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                System.err.println("Ошибка закрытия истории игроков: " + e.getMessage());
+            }
+            out = null;
+        }
+    }
+
+    // false - игрок уже онлайн (один вход распознан несколькими правилами)
+    public synchronized boolean join(String name, long time) {
+        Integer existing = playerIds.get(name);
+        if (existing != null && online.get(existing)) {
+            return false;
+        }
+        int id = existing != null ? existing : register(name, true);
+        append(JOIN, time, id);
+        return true;
+    }
+
+    // Длительность закрытой сессии или -1, если игрок не был онлайн
+    public synchronized long leave(String name, long time) {
+        Integer id = playerIds.get(name);
+        if (id == null || !online.get(id)) {
+            return -1;
+        }
+        long since = players.get(id).onlineSince;
+        append(LEAVE, time, id);
+        return Math.max(0, lastEventTime - since);
+    }
+
+    // Остановка сервера закрывает все сессии, даже если строки о выходе не было
+    public synchronized void serverStopped(long time) {
+        if (onlineCount > 0) {
+            append(SERVER_STOP, time, -1);
+        }
+    }
+
+    public synchronized List<PlayerSummary> getPlayers() {
+        long now = System.currentTimeMillis();
+        List<PlayerSummary> result = new ArrayList<>(players.size());
+        for (PlayerStats stats : players) {
+            result.add(stats.summary(now));
+        }
+        result.sort(Comparator.comparingLong(PlayerSummary::totalPlaytimeMs).reversed());
+        return result;
+    }
+
+    public synchronized PlayerSummary getPlayer(String name) {
+        Integer id = playerIds.get(name);
+        return id == null ? null : players.get(id).summary(System.currentTimeMillis());
+    }
+
+    public synchronized List<PlayerActivityPoint> getHourlyPeaks(long from, long to) {
+        fillUntil(System.currentTimeMillis());
+        List<PlayerActivityPoint> result = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : hourlyPeaks.subMap(Math.floorDiv(from, HOUR_MS), true,
+                Math.floorDiv(to, HOUR_MS), true).entrySet()) {
+            result.add(new PlayerActivityPoint(entry.getKey() * HOUR_MS, entry.getValue()));
+        }
+        return result;
+    }
+
+    public synchronized List<PlayerActivityPoint> getDailyPeaks(long from, long to) {
+        fillUntil(System.currentTimeMillis());
+        TreeMap<Long, Integer> days = new TreeMap<>();
+        for (Map.Entry<Long, Integer> entry : hourlyPeaks.subMap(Math.floorDiv(from, HOUR_MS), true,
+                Math.floorDiv(to, HOUR_MS), true).entrySet()) {
+            days.merge(dayStart(entry.getKey() * HOUR_MS), entry.getValue(), Math::max);
+        }
+        List<PlayerActivityPoint> result = new ArrayList<>(days.size());
+        days.forEach((day, peak) -> result.add(new PlayerActivityPoint(day, peak)));
+        return result;
+    }
+
+    public synchronized List<PlayerActivityPoint> getDailyUniquePlayers(long from, long to) {
+        fillUntil(System.currentTimeMillis());
+        List<PlayerActivityPoint> result = new ArrayList<>();
+        for (Map.Entry<Long, BitSet> entry : dailyPlayers.subMap(epochDay(from), true, epochDay(to), true).entrySet()) {
+            long start = LocalDate.ofEpochDay(entry.getKey()).atStartOfDay(ZONE).toInstant().toEpochMilli();
+            result.add(new PlayerActivityPoint(start, entry.getValue().cardinality()));
+        }
+        return result;
+    }
+
+    private int register(String name, boolean persist) {
+        int id = players.size();
+        playerIds.put(name, id);
+        players.add(new PlayerStats(name));
+        if (persist && out != null) {
+            try {
+                out.writeByte(NAME);
+                out.writeInt(id);
+                out.writeUTF(name);
+            } catch (IOException e) {
+                System.err.println("Ошибка записи истории игроков: " + e.getMessage());
+            }
+        }
+        return id;
+    }
+
+    private void append(byte type, long time, int id) {
+        time = Math.max(time, lastEventTime);
+        apply(type, time, id);
+        if (out == null) {
+            return;
+        }
+        try {
+            out.writeByte(type);
+            out.writeLong(time);
+            out.writeInt(id);
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Ошибка записи истории игроков: " + e.getMessage());
+        }
+    }
+
+    private void apply(byte type, long time, int id) {
+        fillUntil(time);
+        lastEventTime = Math.max(lastEventTime, time);
+        switch (type) {
+            case JOIN -> {
+                if (online.get(id)) {
+                    return;
+                }
+                online.set(id);
+                onlineCount++;
+                players.get(id).join(time);
+                markDay(time, id);
+                hourlyPeaks.merge(Math.floorDiv(time, HOUR_MS), onlineCount, Math::max);
+            }
+            case LEAVE -> {
+                if (!online.get(id)) {
+                    return;
+                }
+                close(id, time);
+            }
+            case SERVER_STOP -> {
+                for (int i = online.nextSetBit(0); i >= 0; i = online.nextSetBit(i + 1)) {
+                    close(i, time);
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void close(int id, long time) {
+        online.clear(id);
+        onlineCount--;
+        players.get(id).leave(time);
+    }
+
+    // Пока игроки онлайн, часы и дни без событий тоже должны получить пик и отметку игрока
+    private void fillUntil(long time) {
+        if (onlineCount == 0 || lastEventTime == 0) {
+            return;
+        }
+        long fromHour = Math.floorDiv(lastEventTime, HOUR_MS) + 1;
+        long toHour = Math.floorDiv(time, HOUR_MS);
+        for (long hour = fromHour; hour <= toHour; hour++) {
+            hourlyPeaks.merge(hour, onlineCount, Math::max);
+            long hourStart = hour * HOUR_MS;
+            if (epochDay(hourStart) != epochDay(hourStart - HOUR_MS)) {
+                for (int i = online.nextSetBit(0); i >= 0; i = online.nextSetBit(i + 1)) {
+                    markDay(hourStart, i);
+                }
+            }
+        }
+        if (toHour >= fromHour) {
+            lastEventTime = Math.max(lastEventTime, toHour * HOUR_MS);
+        }
+    }
+
+    private void markDay(long time, int id) {
+        dailyPlayers.computeIfAbsent(epochDay(time), day -> new BitSet()).set(id);
+    }
+
+    private long replay() throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        long valid = 0;
+        try (CountingInputStream counter = new CountingInputStream(new BufferedInputStream(Files.newInputStream(file)));
+             DataInputStream in = new DataInputStream(counter)) {
+            while (true) {
+                byte type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                try {
+                    if (type == NAME) {
+                        int id = in.readInt();
+                        String name = in.readUTF();
+                        if (id != players.size()) {
+                            break;
+                        }
+                        register(name, false);
+                    } else if (type == JOIN || type == LEAVE || type == SERVER_STOP) {
+                        long time = in.readLong();
+                        int id = in.readInt();
+                        if (type != SERVER_STOP && (id < 0 || id >= players.size())) {
+                            break;
+                        }
+                        apply(type, time, id);
+                    } else {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                valid = counter.count;
+            }
+        }
+        return valid;
+    }
+
+    private static long epochDay(long time) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(time), ZONE).toEpochDay();
+    }
+
+    private static long dayStart(long time) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(time), ZONE).atStartOfDay(ZONE).toInstant().toEpochMilli();
+    }
+
+    private static final class PlayerStats {
+        final String name;
+        long totalPlaytimeMs;
+        int sessions;
+        long firstSeen = -1;
+        long lastSeen = -1;
+        long onlineSince = -1;
+
+        PlayerStats(String name) {
+            this.name = name;
+        }
+
+        void join(long time) {
+            onlineSince = time;
+            sessions++;
+            if (firstSeen < 0) {
+                firstSeen = time;
+            }
+            lastSeen = time;
+        }
+
+        void leave(long time) {
+            totalPlaytimeMs += Math.max(0, time - onlineSince);
+            onlineSince = -1;
+            lastSeen = time;
+        }
+
+        PlayerSummary summary(long now) {
+            boolean isOnline = onlineSince >= 0;
+            long total = totalPlaytimeMs + (isOnline ? Math.max(0, now - onlineSince) : 0);
+            return new PlayerSummary(name, total, sessions, firstSeen, isOnline ? now : lastSeen, isOnline);
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package org.ejectfb.minecraftserverwebhandler.services;
+
+import jakarta.annotation.PreDestroy;
+import org.ejectfb.minecraftserverwebhandler.config.ServerProperties;
+import org.ejectfb.minecraftserverwebhandler.dto.ProcessStats;
+import org.ejectfb.minecraftserverwebhandler.metrics.ProcSampler;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Сервер запускается через sh -c, поэтому замеряется дочерний java-процесс, а не сама оболочка
+@Service
+public class ProcessSamplerService {
+    public static final String PROCESS_TOPIC = "/topic/process";
+    public static final String CPU_PERCENT = "process_cpu_percent";
+    public static final String RSS_MB = "process_rss_mb";
+    public static final String THREADS = "process_threads";
+    public static final String CONTEXT_SWITCHES = "process_context_switches_per_sec";
+    public static final String DISK_READ = "process_disk_read_bytes_per_sec";
+    public static final String DISK_WRITE = "process_disk_write_bytes_per_sec";
+
+    private static final long CHILD_WAIT_MS = 10_000;
+
+    private final ServerProperties serverProperties;
+    private final TimeSeriesService timeSeriesService;
+    private final ServerDataService serverDataService;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final StatsBroadcastService statsBroadcastService;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("proc-sampler").daemon(true).factory());
+    private ScheduledFuture<?> task;
+    private ProcessHandle process;
+    private long attachedAt;
+    private ProcSampler sampler;
+    private volatile ProcessStats lastStats;
+
+    public ProcessSamplerService(ServerProperties serverProperties,
+                                 TimeSeriesService timeSeriesService,
+                                 ServerDataService serverDataService,
+                                 SimpMessagingTemplate messagingTemplate,
+                                 StatsBroadcastService statsBroadcastService) {
+        this.serverProperties = serverProperties;
+        this.timeSeriesService = timeSeriesService;
+        this.serverDataService = serverDataService;
+        this.messagingTemplate = messagingTemplate;
+        this.statsBroadcastService = statsBroadcastService;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        closeSampler();
+    }
+
+    public synchronized void attach(Process serverProcess) {
+        detach();
+        if (!serverProperties.getMetrics().isProcessSamplingEnabled() || !ProcSampler.isSupported()) {
+            return;
+        }
+        process = serverProcess.toHandle();
+        attachedAt = System.currentTimeMillis();
+        long interval = Math.max(250, serverProperties.getMetrics().getProcessSampleIntervalMs());
+        task = executor.scheduleAtFixedRate(this::sample, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void detach() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+        process = null;
+        lastStats = null;
+        executor.execute(this::closeSampler);
+        publishStats(null);
+        serverDataService.setProcessRssMb(Double.NaN);
+    }
+
+    public ProcessStats getLastStats() {
+        return lastStats;
+    }
+
+    private void sample() {
+        ProcessHandle root;
+        long started;
+        synchronized (this) {
+            root = process;
+            started = attachedAt;
+        }
+        if (root == null) {
+            return;
+        }
+        try {
+            if (sampler == null) {
+                ProcessHandle target = findServerProcess(root, System.currentTimeMillis() - started > CHILD_WAIT_MS);
+                if (target == null) {
+                    return;
+                }
+                sampler = new ProcSampler(target.pid());
+            }
+            if (!sampler.sample()) {
+                closeSampler();
+                return;
+            }
+            publish(sampler);
+        } catch (IOException e) {
+            closeSampler();
+        } catch (RuntimeException e) {
+            System.err.println("Ошибка замера процесса сервера: " + e.getMessage());
+        }
+    }
+
+    // Ищем java среди потомков оболочки; если его так и нет - замеряем саму оболочку
+    private static ProcessHandle findServerProcess(ProcessHandle root, boolean fallbackToRoot) {
+        Optional<ProcessHandle> java = root.descendants()
+                .filter(handle -> handle.info().command().map(ProcessSamplerService::isJava).orElse(false))
+                .findFirst();
+        if (java.isPresent()) {
+            return java.get();
+        }
+        if (root.info().command().map(ProcessSamplerService::isJava).orElse(false) || fallbackToRoot) {
+            return root;
+        }
+        return null;
+    }
+
+    private static boolean isJava(String command) {
+        return command.endsWith("/java") || command.equals("java");
+    }
+
+    private void publish(ProcSampler sampler) {
+        double rssMb = sampler.rssBytes() < 0 ? Double.NaN : sampler.rssBytes() / (1024.0 * 1024);
+        timeSeriesService.record(CPU_PERCENT, sampler.cpuPercent());
+        timeSeriesService.record(RSS_MB, rssMb);
+        timeSeriesService.record(THREADS, sampler.threads() < 0 ? Double.NaN : sampler.threads());
+        timeSeriesService.record(CONTEXT_SWITCHES, sampler.contextSwitchesPerSecond());
+        timeSeriesService.record(DISK_READ, sampler.readBytesPerSecond());
+        timeSeriesService.record(DISK_WRITE, sampler.writeBytesPerSecond());
+        serverDataService.setProcessRssMb(rssMb);
+
+        ProcessStats stats = new ProcessStats(sampler.pid(), System.currentTimeMillis(),
+                nullIfNaN(sampler.cpuPercent()),
+                sampler.rssBytes() < 0 ? null : sampler.rssBytes(),
+                sampler.threads() < 0 ? null : sampler.threads(),
+                nullIfNaN(sampler.contextSwitchesPerSecond()),
+                nullIfNaN(sampler.readBytesPerSecond()),
+                nullIfNaN(sampler.writeBytesPerSecond()));
+        lastStats = stats;
+        messagingTemplate.convertAndSend(PROCESS_TOPIC, stats);
+        publishStats(stats);
+    }
+
+    // В панель уходят округлённые значения, чтобы шум замеров не порождал рассылку каждый интервал
+    private void publishStats(ProcessStats stats) {
+        statsBroadcastService.put("cpuPercent", stats == null || stats.cpuPercent() == null ? null
+                : Math.round(stats.cpuPercent() * 10) / 10.0);
+        statsBroadcastService.put("rssMb", stats == null || stats.rssBytes() == null ? null
+                : Math.round(stats.rssBytes() / (1024.0 * 1024)));
+        statsBroadcastService.put("threads", stats == null ? null : stats.threads());
+        statsBroadcastService.put("contextSwitchesPerSecond", stats == null || stats.contextSwitchesPerSecond() == null ? null
+                : Math.round(stats.contextSwitchesPerSecond()));
+        statsBroadcastService.put("diskReadBytesPerSecond", stats == null || stats.diskReadBytesPerSecond() == null ? null
+                : Math.round(stats.diskReadBytesPerSecond()));
+        statsBroadcastService.put("diskWriteBytesPerSecond", stats == null || stats.diskWriteBytesPerSecond() == null ? null
+                : Math.round(stats.diskWriteBytesPerSecond()));
+    }
+
+    private void closeSampler() {
+        if (sampler != null) {
+            sampler.close();
+            sampler = null;
+        }
+    }
+
+    private static Double nullIfNaN(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+}
@@ -1,136 +1,132 @@
 package org.ejectfb.minecraftserverwebhandler.services;
 
 import jakarta.annotation.PostConstruct;
+import org.ejectfb.minecraftserverwebhandler.config.ServerProperties;
+import org.ejectfb.minecraftserverwebhandler.dto.ConsoleLine;
+import org.ejectfb.minecraftserverwebhandler.parsing.ConsoleLineClassifier;
+import org.ejectfb.minecraftserverwebhandler.parsing.ConsoleRule;
+import org.ejectfb.minecraftserverwebhandler.parsing.ConsoleRules;
 import org.ejectfb.minecraftserverwebhandler.utils.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
-import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 @Service
 public class ServerDataService {
 
-    private final AtomicReference<String> onlinePlayers = new AtomicReference<>("N/A");
-    private final AtomicReference<String> tps = new AtomicReference<>("N/A");
-    private final AtomicReference<String> memory = new AtomicReference<>("N/A");
+    // NaN - значение ещё не получено от сервера
+    private volatile double onlinePlayers = Double.NaN;
+    private volatile double tps = Double.NaN;
+    private volatile double memoryUsedMb = Double.NaN;
+    private volatile double memoryMaxMb = Double.NaN;
+    // Резидентная память процесса из /proc - для серверов, которые не печатают использование памяти
+    private volatile double processRssMb = Double.NaN;
     private final AtomicLong serverStartTime = new AtomicLong(0);
-    private final AtomicReference<String> uptime = new AtomicReference<>("N/A");
-    private final Map<String, Long> playerSessions = new ConcurrentHashMap<>();
 
     @Autowired
     private TelegramBotService telegramBotService;
 
+    @Autowired
+    private ServerProperties serverProperties;
+
+    @Autowired
+    private ConsoleCommandCorrelator commandCorrelator;
+
+    @Autowired
+    private TimeSeriesService timeSeriesService;
+
+    @Autowired
+    private StatsBroadcastService statsBroadcastService;
+
+    @Autowired
+    private PlayerActivityService playerActivityService;
+
+    private ConsoleLineClassifier classifier;
+
     @PostConstruct
     public void init() {
+        classifier = new ConsoleLineClassifier(ConsoleRules.forSets(serverProperties.getConsole().getRuleSets()));
         reset();
     }
 
-    public void parseConsoleLine(String line) {
-        if (line.contains("There are ") && line.contains(" players online")) {
-            onlinePlayers.set(parseOnlinePlayers(line));
-            parseOnlinePlayers(line);
-        } else if (line.contains("Current Memory Usage:")) {
-            memory.set(parseMemory(line));
-            parseMemory(line);
-        } else if (line.contains("TPS from last")) {
-            tps.set(parseTPS(line));
-        } else if (line.contains("[Server thread/INFO]: Done (")) {
-            telegramBotService.sendServerStartedNotification();
-        } else if ((line.contains("The user ") && line.contains(" has successfully logged in."))
-                || line.contains("joined the game")) {
-            String playerName = parseNewJoinedByNLoginPlayer(line);
-            if (Objects.equals(playerName, "N/A")) playerName = parseNewJoinedPlayer(line);
-            playerSessions.put(playerName, System.currentTimeMillis());
-            telegramBotService.sendServerNewPlayerJoinedNotification(playerName);
-        }else if (line.contains(" lost connection: Disconnected")) {
-            String playerName = parsePlayerLeft(line);
-            long sessionDuration = -1;
-            if (playerSessions.containsKey(playerName)) {
-                sessionDuration = System.currentTimeMillis() - playerSessions.get(playerName);
-                playerSessions.remove(playerName);
-            }
-            telegramBotService.sendServerPlayerLeftNotification(playerName,sessionDuration);
+    public void parseConsoleLine(ConsoleLine consoleLine) {
+        String line = consoleLine.text();
+        int ruleIndex = classifier.classify(line);
+        if (ruleIndex == ConsoleLineClassifier.NO_MATCH) {
+            return;
         }
-        uptime.set(calculateUptime());
-    }
-
-    public String parseOnlinePlayers(String consoleText) {
-        String[] lines = consoleText.split("\n");
-        String matchPhrase = "[Server thread/INFO]: There are ";
 
-        for (int i = lines.length - 1; i >= 0; i--) {
-            if (lines[i].contains(matchPhrase)) {
-                String result = lines[i].substring(lines[i].indexOf(matchPhrase) + matchPhrase.length());
-                return result.substring(0, result.indexOf(" "));
+        ConsoleRule rule = classifier.rule(ruleIndex);
+        String extracted = rule.extract(line);
+        String value = extracted == null ? "N/A" : extracted;
+        switch (rule.type()) {
+            case PLAYERS_ONLINE -> setOnlinePlayers(firstNumber(value));
+            case MEMORY -> {
+                // Paper: 1234/5678 mb (Max: 8192 mb)
+                double[] numbers = StringUtils.parseNumbers(value, 3);
+                if (numbers.length > 0) {
+                    memoryUsedMb = numbers[0];
+                    timeSeriesService.record(TimeSeriesService.MEMORY_USED_MB, memoryUsedMb);
+                }
+                if (numbers.length > 1) {
+                    memoryMaxMb = numbers[numbers.length - 1];
+                    timeSeriesService.record(TimeSeriesService.MEMORY_MAX_MB, memoryMaxMb);
+                }
             }
-        }
-        onlinePlayers.set("N/A");
-        return "N/A";
-    }
-
-    public String parseMemory(String consoleText) {
-        String[] lines = consoleText.split("\n");
-        String matchPhrase = "Current Memory Usage: ";
-
-        for (int i = lines.length - 1; i >= 0; i--) {
-            if (lines[i].contains(matchPhrase)) {
-                String memoryUsage = lines[i].substring(lines[i].indexOf(matchPhrase) + matchPhrase.length());
-                return memoryUsage.trim();
+            case TPS -> {
+                tps = firstNumber(value);
+                timeSeriesService.record(TimeSeriesService.TPS, tps);
             }
-        }
-        return "N/A";
-    }
-
-    public String parseTPS(String consoleText) {
-        String[] lines = consoleText.split("\n");
-
-        for (String line : lines) {
-            if (line.contains("TPS from last")) {
-                String tpsPart = line.substring(line.lastIndexOf(":") + 1).trim();
-                tpsPart = tpsPart.replaceAll("[^0-9.,-]", "");
-                String[] tpsValues = tpsPart.split(",");
-                if (tpsValues.length >= 3) {
-                    return tpsValues[0].trim();
+            case SERVER_STARTED -> telegramBotService.sendServerStartedNotification();
+            case PLAYER_JOINED -> {
+                String playerName = extracted;
+                // Строка только похожа на вход (например, сообщение чата) - игрока из неё не достать
+                if (playerName == null) {
+                    break;
                 }
+                // Один вход может попасть под несколько правил (vanilla и nLogin) - считаем его один раз
+                if (playerActivityService.join(playerName, System.currentTimeMillis()) && !Double.isNaN(onlinePlayers)) {
+                    setOnlinePlayers(onlinePlayers + 1);
+                }
+                telegramBotService.sendServerNewPlayerJoinedNotification(playerName);
+            }
+            case PLAYER_LEFT -> {
+                String playerName = extracted;
+                if (playerName == null) {
+                    break;
+                }
+                long sessionDuration = playerActivityService.leave(playerName, System.currentTimeMillis());
+                if (sessionDuration >= 0) {
+                    if (!Double.isNaN(onlinePlayers)) {
+                        setOnlinePlayers(Math.max(0, onlinePlayers - 1));
+                    }
+                }
+                telegramBotService.sendServerPlayerLeftNotification(playerName, sessionDuration);
             }
         }
-        tps.set("N/A");
-        return "N/A";
+        publishStats();
+        commandCorrelator.complete(rule.type(), value);
     }
 
-    public String parseNewJoinedByNLoginPlayer(String consoleText) {
-        Pattern pattern = Pattern.compile("user (\\w+) has successfully logged in.");
-        Matcher matcher = pattern.matcher(consoleText);
-
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-        return "N/A";
+    private void publishStats() {
+        statsBroadcastService.put("onlinePlayers", onlinePlayers);
+        statsBroadcastService.put("tps", tps);
+        statsBroadcastService.put("memoryUsedMb", memoryUsedMb);
+        statsBroadcastService.put("memoryMaxMb", memoryMaxMb);
+        statsBroadcastService.put("memory", getMemory());
+        long startTime = serverStartTime.get();
+        statsBroadcastService.put("startTime", startTime == 0 ? null : startTime);
     }
 
-    public String parseNewJoinedPlayer(String consoleText) {
-        Pattern pattern = Pattern.compile("(\\w+) joined the game");
-        Matcher matcher = pattern.matcher(consoleText);
-
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-        return "N/A";
+    private void setOnlinePlayers(double players) {
+        onlinePlayers = players;
+        timeSeriesService.record(TimeSeriesService.PLAYERS, players);
     }
-    public String parsePlayerLeft(String consoleText) {
-        Pattern pattern = Pattern.compile("(\\w+) lost connection: Disconnected");
-        Matcher matcher = pattern.matcher(consoleText);
 
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-        return "N/A";
+    private static double firstNumber(String value) {
+        double[] numbers = StringUtils.parseNumbers(value, 1);
+        return numbers.length == 0 ? Double.NaN : numbers[0];
     }
 
     public String calculateUptime() {
@@ -148,30 +144,62 @@ public class ServerDataService {
 
     public void setServerStartTime(long startTime) {
         this.serverStartTime.set(startTime);
-        uptime.set(calculateUptime());
+        publishStats();
     }
 
     public void reset() {
-        onlinePlayers.set("N/A");
-        tps.set("N/A");
-        memory.set("N/A");
-        uptime.set("N/A");
+        onlinePlayers = Double.NaN;
+        tps = Double.NaN;
+        memoryUsedMb = Double.NaN;
+        memoryMaxMb = Double.NaN;
         serverStartTime.set(0);
+        publishStats();
     }
 
     public String getOnlinePlayers() {
-        return onlinePlayers.get();
+        return StringUtils.formatNumber(onlinePlayers);
     }
 
     public String getTps() {
-        return tps.get();
+        return StringUtils.formatNumber(tps);
     }
 
     public String getMemory() {
-        return memory.get();
+        if (Double.isNaN(memoryUsedMb)) {
+            return Double.isNaN(processRssMb) ? "N/A" : "RSS " + StringUtils.formatNumber(Math.rint(processRssMb)) + " MB";
+        }
+        if (Double.isNaN(memoryMaxMb)) {
+            return StringUtils.formatNumber(memoryUsedMb) + " MB";
+        }
+        return StringUtils.formatNumber(memoryUsedMb) + "/" + StringUtils.formatNumber(memoryMaxMb) + " MB";
+    }
+
+    public void setProcessRssMb(double processRssMb) {
+        this.processRssMb = processRssMb;
+        statsBroadcastService.put("memory", getMemory());
+    }
+
+    public double getOnlinePlayersValue() {
+        return onlinePlayers;
+    }
+
+    public double getTpsValue() {
+        return tps;
+    }
+
+    public double getMemoryUsedMb() {
+        return memoryUsedMb;
+    }
+
+    public double getMemoryMaxMb() {
+        return memoryMaxMb;
+    }
+
+    public long getServerStartTime() {
+        return serverStartTime.get();
     }
 
     public String getUpTime() {
-        return uptime.get();
+        return calculateUptime();
     }
 }
\ No newline at end of file
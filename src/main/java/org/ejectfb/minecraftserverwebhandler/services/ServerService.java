@@ -1,21 +1,29 @@
 package org.ejectfb.minecraftserverwebhandler.services;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import org.ejectfb.minecraftserverwebhandler.config.ServerProperties;
+import org.ejectfb.minecraftserverwebhandler.dto.ConsoleLine;
 import org.ejectfb.minecraftserverwebhandler.dto.ServerStats;
+import org.ejectfb.minecraftserverwebhandler.metrics.ConsolePipelineMetrics;
+import org.ejectfb.minecraftserverwebhandler.parsing.ConsoleEventType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class ServerService {
@@ -24,13 +32,27 @@ public class ServerService {
     private final ServerDataService dataService;
     private final SimpMessagingTemplate messagingTemplate;
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private static final DateTimeFormatter STATS_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private final ExecutorService outputReaderExecutor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("mc-stdout-reader").daemon(true).factory());
+    private final ConsoleOutputReader outputReader = new ConsoleOutputReader();
     private volatile boolean isServerRunning = false;
     private volatile boolean isStopping = false;
     private CompletableFuture<Void> serverStopFuture;
     private volatile boolean userRequestedStop = false;
     private int pollIntervalHours = 3;
-    private Timer statsTimer;
+    private ScheduledFuture<?> statsTask;
     private String serverCommand;
+    private final AtomicLong startCount = new AtomicLong();
+    private final AtomicLong crashRestartCount = new AtomicLong();
+    private final AtomicLong outputLines = new AtomicLong();
+    // Номер строки выдаётся и строка ставится в рассылку под одной блокировкой, чтобы кадры шли по порядку номеров
+    private final Object consoleLock = new Object();
+
+    @PostConstruct
+    public void init() {
+        statsBroadcastService.put("running", isServerRunning);
+    }
 
     @PreDestroy
     public void cleanup() {
@@ -38,12 +60,27 @@ public class ServerService {
             System.out.println("Application is closing, stopping Minecraft server...");
             stopServer();
         }
+        outputReaderExecutor.shutdown();
     }
 
     @Autowired
     private TelegramBotService telegramBotService;
     @Autowired
     private ConsoleLogService consoleLogService;
+    @Autowired
+    private ConsoleBroadcastService consoleBroadcastService;
+    @Autowired
+    private ConsoleCommandCorrelator commandCorrelator;
+    @Autowired
+    private ProcessSamplerService processSamplerService;
+    @Autowired
+    private StatsBroadcastService statsBroadcastService;
+    @Autowired
+    private PlayerActivityService playerActivityService;
+    @Autowired
+    private ServerProperties serverProperties;
+    @Autowired
+    private ConsolePipelineMetrics pipelineMetrics;
 
 
     public ServerService(ServerDataService dataService, SimpMessagingTemplate messagingTemplate) {
@@ -71,18 +108,12 @@ public class ServerService {
         pb.environment().put("JAVA_TOOL_OPTIONS", "-Dfile.encoding=UTF-8");
         serverProcess = pb.start();
 
-        Executors.newSingleThreadExecutor().submit(() -> {
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(serverProcess.getInputStream(), StandardCharsets.UTF_8))) {
-
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    handleServerOutput(line);
-                }
-                handleServerStopped();
+        Process process = serverProcess;
+        outputReaderExecutor.submit(() -> {
+            try (ReadableByteChannel channel = Channels.newChannel(process.getInputStream())) {
+                outputReader.read(channel, this::handleServerOutput);
             } catch (IOException e) {
-                messagingTemplate.convertAndSend("/topic/console",
-                        "Error reading server output: " + e.getMessage());
+                sendToConsole("Error reading server output: " + e.getMessage());
             } finally {
                 handleServerStopped();
             }
@@ -92,6 +123,9 @@ public class ServerService {
                 new OutputStreamWriter(serverProcess.getOutputStream(), StandardCharsets.UTF_8));
 
         isServerRunning = true;
+        startCount.incrementAndGet();
+        processSamplerService.attach(process);
+        statsBroadcastService.put("running", true);
         startStatsTimer();
         sendToConsole("Server started with command: " + command);
     }
@@ -129,14 +163,36 @@ public class ServerService {
         sendToConsole("> " + command);
     }
 
+    // Будущее завершается строкой-ответом сервера нужного типа или TimeoutException
+    public CompletableFuture<String> sendCommand(String command, ConsoleEventType response) {
+        return sendCommand(command, response, Math.max(100, serverProperties.getConsole().getCommandTimeoutMs()));
+    }
+
+    public synchronized CompletableFuture<String> sendCommand(String command, ConsoleEventType response, long timeoutMs) {
+        CompletableFuture<String> future = commandCorrelator.expect(response, timeoutMs);
+        try {
+            sendCommand(command);
+        } catch (IOException | IllegalStateException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    // list и tps отправляются вместе; если сервер не знает команду, по таймауту остаётся прежнее значение
+    public CompletableFuture<ServerStats> requestStats() {
+        CompletableFuture<String> players = sendCommand("list", ConsoleEventType.PLAYERS_ONLINE);
+        CompletableFuture<String> tps = sendCommand("tps", ConsoleEventType.TPS);
+        return CompletableFuture.allOf(players.exceptionally(e -> null), tps.exceptionally(e -> null))
+                .thenApply(v -> getStats());
+    }
+
     public ServerStats getStats() {
-        DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
         return new ServerStats(
                 dataService.getOnlinePlayers(),
                 dataService.getTps(),
                 dataService.getMemory(),
                 dataService.getUpTime(),
-                dtf.format(LocalDateTime.now()),
+                STATS_TIME_FORMAT.format(LocalDateTime.now()),
                 isServerRunning ? "Running" : "Stopped"
         );
     }
@@ -150,34 +206,33 @@ public class ServerService {
         startStatsTimer();
     }
 
-    private void startStatsTimer() {
-        if (statsTimer != null) {
-            statsTimer.cancel();
+    private synchronized void startStatsTimer() {
+        if (statsTask != null) {
+            statsTask.cancel(false);
         }
 
-        statsTimer = new Timer();
-        statsTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                if (isServerRunning) {
-                    try {
-                        sendCommand("list");
-                        sendCommand("tps");
-                        Thread.sleep(5000);
-                        sendStatsToConsole();
-                        telegramBotService.sendServerStats(getStats());
-                    } catch (Exception e) {
-                        sendToConsole("Ошибка при отправке статистики: " + e.getMessage());
+        long interval = pollIntervalHours * 3600 * 1000L;
+        statsTask = scheduler.scheduleAtFixedRate(() -> {
+            if (isServerRunning) {
+                requestStats().whenComplete((stats, error) -> {
+                    if (error != null) {
+                        sendToConsole("Ошибка при отправке статистики: " + error.getMessage());
+                        return;
                     }
-                }
+                    sendStatsToConsole(stats);
+                    telegramBotService.sendServerStats(stats);
+                });
             }
-        }, pollIntervalHours * 3600 * 1000L, pollIntervalHours * 3600 * 1000L);
+        }, interval, interval, TimeUnit.MILLISECONDS);
     }
 
     private void handleServerStopped() {
         if (isServerRunning) {
             isServerRunning = false;
             isStopping = false;
+            processSamplerService.detach();
+            playerActivityService.serverStopped(System.currentTimeMillis());
+            statsBroadcastService.put("running", false);
             sendToConsole("Server stopped completely");
             telegramBotService.sendServerStopNotification();
 
@@ -189,6 +244,7 @@ public class ServerService {
             if (!userRequestedStop) {
                 scheduler.schedule(() -> {
                     try {
+                        crashRestartCount.incrementAndGet();
                         clearConsole();
                         telegramBotService.sendServerRestartNotification();
                         startServer(serverCommand);
@@ -220,11 +276,12 @@ public class ServerService {
     }
 
     public void sendToConsole(String message) {
-        messagingTemplate.convertAndSend("/topic/console", message);
+        synchronized (consoleLock) {
+            consoleBroadcastService.publish(consoleLogService.addLog(message));
+        }
     }
 
-    private void sendStatsToConsole() {
-        ServerStats stats = getStats();
+    private void sendStatsToConsole(ServerStats stats) {
         String statsMessage = String.format(
                 "Server Stats [%s]%nPlayers: %s%nTPS: %s%nMemory: %s%nUptime: %s",
                 stats.timestamp(), stats.onlinePlayers(),
@@ -234,37 +291,47 @@ public class ServerService {
     }
 
     private void clearConsole() {
-        messagingTemplate.convertAndSend("/topic/console", "clear");
+        consoleBroadcastService.clear();
     }
 
     public String getServerCommand() {
         return this.serverCommand;
     }
 
-    private void handleServerOutput(String line) {
-        consoleLogService.addLog(line);
-        messagingTemplate.convertAndSend("/topic/console", line);
-        dataService.parseConsoleLine(line);
+    private void handleServerOutput(CharSequence line) {
+        long readAt = outputReader.getLastReadNanos();
+        long started = System.nanoTime();
+        ConsoleLine consoleLine;
+        long appended;
+        synchronized (consoleLock) {
+            consoleLine = consoleLogService.addLog(line);
+            appended = System.nanoTime();
+            consoleBroadcastService.publish(consoleLine, readAt);
+        }
+        long published = System.nanoTime();
+        dataService.parseConsoleLine(consoleLine);
+        long classified = System.nanoTime();
+
+        pipelineMetrics.read().record(started - readAt);
+        pipelineMetrics.append().record(appended - started);
+        pipelineMetrics.publish().record(published - appended);
+        pipelineMetrics.classify().record(classified - published);
+        outputLines.incrementAndGet();
     }
 
-    public String getServerLogs() {
-        if (!isServerRunning || serverProcess == null) {
-            return "";
-        }
+    public long getStartCount() {
+        return startCount.get();
+    }
 
-        try {
-            BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(serverProcess.getInputStream(), StandardCharsets.UTF_8)
-            );
-
-            StringBuilder logs = new StringBuilder();
-            String line;
-            while (reader.ready() && (line = reader.readLine()) != null) {
-                logs.append(line).append("\n");
-            }
-            return logs.toString();
-        } catch (IOException e) {
-            return "Error reading logs: " + e.getMessage();
-        }
+    public long getCrashRestartCount() {
+        return crashRestartCount.get();
+    }
+
+    public long getOutputLines() {
+        return outputLines.get();
+    }
+
+    public long getOutputBytes() {
+        return outputReader.getBytesRead();
     }
 }
\ No newline at end of file
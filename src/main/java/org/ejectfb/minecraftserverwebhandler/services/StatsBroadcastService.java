@@ -0,0 +1,84 @@
+package org.ejectfb.minecraftserverwebhandler.services;
+
+import jakarta.annotation.PreDestroy;
+import org.ejectfb.minecraftserverwebhandler.config.ServerProperties;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Источники сами кладут сюда свои значения; в /topic/stats уходят только поля, изменившиеся с прошлой рассылки,
+// и не чаще statsMaxUpdatesPerSecond раз в секунду. Полный снимок новая подписка получает через /app/stats.
+@Service
+public class StatsBroadcastService {
+    public static final String STATS_TOPIC = "/topic/stats";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ServerProperties serverProperties;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("stats-broadcast").daemon(true).factory());
+    private final Map<String, Object> current = new LinkedHashMap<>();
+    private final Map<String, Object> sent = new LinkedHashMap<>();
+    private boolean flushScheduled;
+    private long lastFlushNanos = System.nanoTime() - TimeUnit.SECONDS.toNanos(1);
+
+    public StatsBroadcastService(SimpMessagingTemplate messagingTemplate, ServerProperties serverProperties) {
+        this.messagingTemplate = messagingTemplate;
+        this.serverProperties = serverProperties;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // NaN и бесконечность уходят клиенту как null - в JSON их нет
+    public void put(String field, Object value) {
+        if (value instanceof Double number && (number.isNaN() || number.isInfinite())) {
+            value = null;
+        }
+        synchronized (this) {
+            if (current.containsKey(field) && Objects.equals(current.get(field), value)) {
+                return;
+            }
+            current.put(field, value);
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+            long minInterval = TimeUnit.SECONDS.toNanos(1) / Math.max(1, serverProperties.getMetrics().getStatsMaxUpdatesPerSecond());
+            long delay = Math.max(0, lastFlushNanos + minInterval - System.nanoTime());
+            executor.schedule(this::flush, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public synchronized Map<String, Object> getSnapshot() {
+        return new LinkedHashMap<>(sent);
+    }
+
+    // Отправка под блокировкой: снимок и изменения не могут разойтись по порядку
+    private synchronized void flush() {
+        flushScheduled = false;
+        lastFlushNanos = System.nanoTime();
+        Map<String, Object> delta = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : current.entrySet()) {
+            if (!sent.containsKey(entry.getKey()) || !Objects.equals(sent.get(entry.getKey()), entry.getValue())) {
+                delta.put(entry.getKey(), entry.getValue());
+                sent.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (delta.isEmpty()) {
+            return;
+        }
+        try {
+            messagingTemplate.convertAndSend(STATS_TOPIC, delta);
+        } catch (RuntimeException e) {
+            System.err.println("Ошибка рассылки статистики: " + e.getMessage());
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package org.ejectfb.minecraftserverwebhandler.services;
 
+import jakarta.annotation.PreDestroy;
 import org.ejectfb.minecraftserverwebhandler.dto.ServerStats;
+import org.ejectfb.minecraftserverwebhandler.services.TelegramNotificationDispatcher.Delivery;
+import org.ejectfb.minecraftserverwebhandler.utils.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
@@ -13,16 +17,29 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Service
 public class TelegramBotService {
-    private String botToken;
-    private String chatId;
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final int READ_TIMEOUT_MS = 10000;
+    private static final Pattern RETRY_AFTER_PATTERN = Pattern.compile("\"retry_after\"\\s*:\\s*(\\d+)");
+
+    private volatile String botToken;
+    private volatile String chatId;
+    private final TelegramNotificationDispatcher dispatcher;
 
     public TelegramBotService(@Value("${telegram.bot.token:}") String botToken,
                               @Value("${telegram.bot.chatId:}") String chatId) {
         this.botToken = botToken;
         this.chatId = chatId;
+        this.dispatcher = new TelegramNotificationDispatcher(this::deliver);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdown(5000);
     }
 
     public boolean testConnection(String testToken, String testChatId) {
@@ -34,6 +51,8 @@ public class TelegramBotService {
             String urlString = "https://api.telegram.org/bot" + testToken + "/getMe";
             URL url = new URL(urlString);
             HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            conn.setReadTimeout(READ_TIMEOUT_MS);
             conn.setRequestMethod("GET");
 
             try (BufferedReader br = new BufferedReader(
@@ -131,7 +150,8 @@ public class TelegramBotService {
         return sendMessage(message);
     }
 
-    public boolean sendServerBackupCreatedNotification(String backupName, String type, String backupSize, long backupDuration) {
+    public boolean sendServerBackupCreatedNotification(String backupName, String type, String backupSize, long backupDuration,
+                                                       String backupThroughput) {
         long seconds = backupDuration / 1000;
         String backupDurationTime = "";
         if (seconds < 60) {
@@ -144,7 +164,8 @@ public class TelegramBotService {
         String message = "🔋 " + type + " бэкап " + backupName + " создан\n" +
                 "📦 Размер бэкапа: " + backupSize + "Гб\n" +
                 "⏰ Время создания бэкапа: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")) + "\n" +
-                "⏱️ Затрачено времени: " + backupDurationTime;
+                "⏱️ Затрачено времени: " + backupDurationTime +
+                "🚀 Скорость: " + backupThroughput + " МБ/с";
         return sendMessage(message);
     }
 
@@ -182,16 +203,11 @@ public class TelegramBotService {
     }
 
     public boolean sendServerStats(ServerStats stats) {
-        String serverIp;
-        try {
-            URL externalIp = new URL("http://checkip.amazonaws.com");
-            BufferedReader in = new BufferedReader(new InputStreamReader(externalIp.openStream()));
-            serverIp = in.readLine();
-        } catch (Exception e) {
-            serverIp = "N/A";
+        if (!isConfigured()) {
+            return false;
         }
-
-        String message = String.format(
+        // IP запрашивается уже в потоке рассылки, чтобы не блокировать вызывающий поток
+        return dispatcher.submit(() -> String.format(
                 """
                 📊 Статистика сервера Minecraft (%s)
                 🌐 IP: %s
@@ -201,27 +217,52 @@ public class TelegramBotService {
                 ⏱ TPS: %s
                 ⏳ Время работы: %s""",
                 stats.timestamp(),
-                serverIp,
+                fetchExternalIp(),
                 stats.status().equals("Running") ? "работает" : "остановлен",
                 stats.memory(),
                 stats.onlinePlayers(),
                 stats.tps(),
                 stats.upTime()
-        );
-        return sendMessage(message);
+        ));
+    }
+
+    private String fetchExternalIp() {
+        try {
+            HttpURLConnection conn = (HttpURLConnection) new URL("http://checkip.amazonaws.com").openConnection();
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            conn.setReadTimeout(READ_TIMEOUT_MS);
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()))) {
+                return in.readLine();
+            }
+        } catch (Exception e) {
+            return "N/A";
+        }
     }
 
+    // Доставка асинхронная: true - сообщение встало в очередь, не вытеснив других; false - бот не настроен
+    // или очередь переполнена
     public boolean sendMessage(String text) {
-        if (botToken == null || botToken.isEmpty() || chatId == null || chatId.isEmpty()) {
+        if (!isConfigured()) {
             return false;
         }
+        return dispatcher.submit(() -> text);
+    }
+
+    private boolean isConfigured() {
+        return botToken != null && !botToken.isEmpty() && chatId != null && !chatId.isEmpty();
+    }
+
+    private Delivery deliver(String text) {
+        if (!isConfigured()) {
+            return Delivery.failed();
+        }
 
         try {
             HttpURLConnection conn = prepareConnection(text);
             return checkResponse(conn);
         } catch (IOException e) {
-            e.printStackTrace();
-            return false;
+            System.err.println("Ошибка отправки сообщения в Telegram: " + e.getMessage());
+            return Delivery.retry(0);
         }
     }
 
@@ -229,18 +270,17 @@ public class TelegramBotService {
         String urlString = "https://api.telegram.org/bot" + botToken + "/sendMessage";
         URL url = new URL(urlString);
         HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        conn.setReadTimeout(READ_TIMEOUT_MS);
         conn.setRequestMethod("POST");
         conn.setRequestProperty("Content-Type", "application/json");
         conn.setDoOutput(true);
 
-        String escapedText = text.replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t");
+        // Обычный текст: в склеенной пачке одно имя вроде Steve_123 ломало бы разметку Markdown у всех уведомлений
+        String escapedText = StringUtils.escapeJson(text);
 
         String jsonInputString = String.format(
-                "{\"chat_id\": \"%s\", \"text\": \"%s\", \"parse_mode\": \"Markdown\"}",
+                "{\"chat_id\": \"%s\", \"text\": \"%s\"}",
                 chatId,
                 escapedText
         );
@@ -252,11 +292,38 @@ public class TelegramBotService {
         return conn;
     }
 
-    private boolean checkResponse(HttpURLConnection conn) throws IOException {
-        try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
-            return br.lines().anyMatch(line -> line.contains("\"ok\":true"));
+    private Delivery checkResponse(HttpURLConnection conn) throws IOException {
+        int status = conn.getResponseCode();
+        if (status == HttpURLConnection.HTTP_OK) {
+            String body = readBody(conn.getInputStream());
+            return body.contains("\"ok\":true") ? Delivery.SUCCESS : Delivery.failed();
+        }
+
+        String body = readBody(conn.getErrorStream());
+        System.err.println("Telegram API вернул " + status + ": " + body);
+        if (status == 429) {
+            Matcher matcher = RETRY_AFTER_PATTERN.matcher(body);
+            return Delivery.retry(matcher.find() ? Long.parseLong(matcher.group(1)) * 1000 : 0);
         }
+        return status >= 500 ? Delivery.retry(0) : Delivery.failed();
+    }
+
+    private String readBody(InputStream stream) throws IOException {
+        if (stream == null) {
+            return "";
+        }
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            StringBuilder body = new StringBuilder();
+            String line;
+            while ((line = br.readLine()) != null) {
+                body.append(line);
+            }
+            return body.toString();
+        }
+    }
+
+    public TelegramNotificationDispatcher getDispatcher() {
+        return dispatcher;
     }
 
     public String getBotToken() {
@@ -0,0 +1,200 @@
+package org.ejectfb.minecraftserverwebhandler.services;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+public class TelegramNotificationDispatcher {
+    // Лимиты Telegram: не чаще 1 сообщения в секунду и 20 сообщений в минуту на чат
+    private static final long MIN_INTERVAL_MS = 1000;
+    private static final int WINDOW_MESSAGES = 20;
+    private static final long WINDOW_MS = 60_000;
+    private static final int QUEUE_CAPACITY = 100;
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long INITIAL_BACKOFF_MS = 1000;
+    private static final long MAX_BACKOFF_MS = 30_000;
+    private static final int MAX_MESSAGE_LENGTH = 4096;
+    private static final String MESSAGE_SEPARATOR = "\n\n";
+
+    public record Delivery(boolean ok, boolean retryable, long retryAfterMs) {
+        public static final Delivery SUCCESS = new Delivery(true, false, 0);
+
+        public static Delivery retry(long retryAfterMs) {
+            return new Delivery(false, true, retryAfterMs);
+        }
+
+        public static Delivery failed() {
+            return new Delivery(false, false, 0);
+        }
+    }
+
+    private final Function<String, Delivery> sender;
+    private final BlockingQueue<Supplier<String>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final long[] sendTimes = new long[WINDOW_MESSAGES];
+    private final Thread worker;
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong unreportedDrops = new AtomicLong();
+    private final AtomicLong sendAttempts = new AtomicLong();
+    private final AtomicLong sendNanos = new AtomicLong();
+    private volatile boolean running = true;
+    private volatile long shutdownDeadline = Long.MAX_VALUE;
+    private int sendTimesIndex = 0;
+    private String carry;
+
+    public TelegramNotificationDispatcher(Function<String, Delivery> sender) {
+        this.sender = sender;
+        this.worker = Thread.ofPlatform().name("telegram-notifier").daemon(true).start(this::run);
+    }
+
+    // Уведомление только ставится в очередь; false - очередь была переполнена и ради него выброшено более старое
+    public boolean submit(Supplier<String> message) {
+        boolean dropped = false;
+        while (!queue.offer(message)) {
+            // Очередь переполнена: выбрасываем самое старое уведомление, чтобы не блокировать вызывающий поток
+            if (queue.poll() != null) {
+                droppedCount.incrementAndGet();
+                unreportedDrops.incrementAndGet();
+                dropped = true;
+            }
+        }
+        return !dropped;
+    }
+
+    public void shutdown(long timeoutMs) {
+        shutdownDeadline = System.currentTimeMillis() + timeoutMs;
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getSendAttempts() {
+        return sendAttempts.get();
+    }
+
+    // Суммарное время запросов к Telegram API, без ожидания лимитов и пауз между попытками
+    public long getSendNanos() {
+        return sendNanos.get();
+    }
+
+    private void run() {
+        while (running || ((carry != null || !queue.isEmpty()) && System.currentTimeMillis() < shutdownDeadline)) {
+            String text = null;
+            try {
+                text = nextMessage();
+                if (text == null) {
+                    continue;
+                }
+                awaitRateLimit();
+                deliver(text);
+            } catch (InterruptedException e) {
+                if (text != null && carry == null) {
+                    carry = text;
+                }
+                if (running) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            } catch (RuntimeException e) {
+                failedCount.incrementAndGet();
+                System.err.println("Ошибка отправки уведомления в Telegram: " + e.getMessage());
+            }
+        }
+    }
+
+    // Всё, что накопилось в очереди за время ожидания лимита, склеивается в одно сообщение
+    private String nextMessage() throws InterruptedException {
+        String first = carry;
+        carry = null;
+        if (first == null) {
+            Supplier<String> next = running ? queue.take() : queue.poll();
+            if (next == null) {
+                return null;
+            }
+            first = next.get();
+        }
+
+        StringBuilder merged = new StringBuilder();
+        long drops = unreportedDrops.getAndSet(0);
+        if (drops > 0) {
+            merged.append("⚠️ Пропущено уведомлений: ").append(drops).append(MESSAGE_SEPARATOR);
+        }
+        merged.append(first);
+        // Одно уведомление вместе с предупреждением о пропусках тоже может не влезть в лимит Telegram
+        if (merged.length() > MAX_MESSAGE_LENGTH) {
+            int end = MAX_MESSAGE_LENGTH;
+            if (Character.isHighSurrogate(merged.charAt(end - 1))) {
+                end--;
+            }
+            merged.setLength(end);
+        }
+
+        Supplier<String> next;
+        while ((next = queue.poll()) != null) {
+            String text = next.get();
+            if (merged.length() + MESSAGE_SEPARATOR.length() + text.length() > MAX_MESSAGE_LENGTH) {
+                carry = text;
+                break;
+            }
+            merged.append(MESSAGE_SEPARATOR).append(text);
+        }
+        return merged.toString();
+    }
+
+    private void awaitRateLimit() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        long previous = sendTimes[(sendTimesIndex + WINDOW_MESSAGES - 1) % WINDOW_MESSAGES];
+        long oldest = sendTimes[sendTimesIndex];
+        long waitUntil = Math.max(previous + MIN_INTERVAL_MS, oldest + WINDOW_MS);
+        if (waitUntil > now) {
+            TimeUnit.MILLISECONDS.sleep(waitUntil - now);
+        }
+    }
+
+    private void deliver(String text) throws InterruptedException {
+        long backoff = INITIAL_BACKOFF_MS;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            long started = System.nanoTime();
+            Delivery delivery = sender.apply(text);
+            sendNanos.addAndGet(System.nanoTime() - started);
+            sendAttempts.incrementAndGet();
+            sendTimes[sendTimesIndex] = System.currentTimeMillis();
+            sendTimesIndex = (sendTimesIndex + 1) % WINDOW_MESSAGES;
+
+            if (delivery.ok()) {
+                sentCount.incrementAndGet();
+                return;
+            }
+            if (!delivery.retryable() || attempt == MAX_ATTEMPTS) {
+                break;
+            }
+            TimeUnit.MILLISECONDS.sleep(Math.max(backoff, delivery.retryAfterMs()));
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+        }
+        failedCount.incrementAndGet();
+    }
+}
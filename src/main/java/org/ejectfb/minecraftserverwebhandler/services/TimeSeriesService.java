@@ -0,0 +1,143 @@
+package org.ejectfb.minecraftserverwebhandler.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.ejectfb.minecraftserverwebhandler.config.ServerProperties;
+import org.ejectfb.minecraftserverwebhandler.metrics.TimeSeries;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// История числовых показателей сервера: точки в памяти, на диск сбрасывается периодически и при остановке
+@Service
+public class TimeSeriesService {
+    public static final String PLAYERS = "players";
+    public static final String TPS = "tps";
+    public static final String MEMORY_USED_MB = "memory_used_mb";
+    public static final String MEMORY_MAX_MB = "memory_max_mb";
+
+    private static final String FILE_NAME = "timeseries.bin.gz";
+    private static final int MAGIC = 0x4D545331;
+
+    private final ServerProperties serverProperties;
+    private final Map<String, TimeSeries> series = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("metrics-persist").daemon(true).factory());
+    private Path file;
+
+    public TimeSeriesService(ServerProperties serverProperties) {
+        this.serverProperties = serverProperties;
+    }
+
+    @PostConstruct
+    public void init() {
+        file = Paths.get(serverProperties.getMetrics().getDirectory()).toAbsolutePath().resolve(FILE_NAME);
+        load();
+        long interval = Math.max(10, serverProperties.getMetrics().getPersistIntervalSec());
+        executor.scheduleWithFixedDelay(this::persist, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        persist();
+    }
+
+    public void record(String metric, double value) {
+        record(metric, value, System.currentTimeMillis());
+    }
+
+    public void record(String metric, double value, long timestamp) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return;
+        }
+        series.computeIfAbsent(metric, key -> newSeries()).record(timestamp, value);
+    }
+
+    public double last(String metric) {
+        TimeSeries timeSeries = series.get(metric);
+        return timeSeries == null ? Double.NaN : timeSeries.last();
+    }
+
+    public List<String> getMetricNames() {
+        return series.keySet().stream().sorted().toList();
+    }
+
+    public TimeSeries.Range query(String metric, TimeSeries.Resolution resolution, long from, long to) {
+        TimeSeries timeSeries = series.get(metric);
+        return timeSeries == null ? null : timeSeries.query(resolution, from, to);
+    }
+
+    // Самое подробное разрешение, которое покрывает весь диапазон начиная с from
+    public TimeSeries.Resolution resolve(String metric, long from) {
+        TimeSeries timeSeries = series.get(metric);
+        return timeSeries == null ? TimeSeries.Resolution.RAW : timeSeries.finestCovering(from);
+    }
+
+    private TimeSeries newSeries() {
+        ServerProperties.Metrics metrics = serverProperties.getMetrics();
+        return new TimeSeries(metrics.getRawCapacity(), metrics.getMinuteCapacity(), metrics.getHourCapacity());
+    }
+
+    // Пишем во временный файл и переименовываем, чтобы сбой посреди записи не испортил прошлый снимок
+    private synchronized void persist() {
+        if (file == null || series.isEmpty()) {
+            return;
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(FILE_NAME + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                out.writeInt(MAGIC);
+                Map<String, TimeSeries> snapshot = Map.copyOf(series);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<String, TimeSeries> entry : snapshot.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    entry.getValue().write(out);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Ошибка сохранения метрик: " + e.getMessage());
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC) {
+                System.err.println("Неизвестный формат файла метрик: " + file);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String metric = in.readUTF();
+                TimeSeries timeSeries = newSeries();
+                timeSeries.read(in);
+                series.put(metric, timeSeries);
+            }
+        } catch (IOException e) {
+            System.err.println("Ошибка загрузки метрик: " + e.getMessage());
+        }
+    }
+}
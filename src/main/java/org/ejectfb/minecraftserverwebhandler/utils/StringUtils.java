@@ -1,5 +1,8 @@
 package org.ejectfb.minecraftserverwebhandler.utils;
 
+import java.util.Arrays;
+import java.util.Locale;
+
 public class StringUtils {
 
     public static String formatDuration(long millis) {
@@ -21,4 +24,69 @@ public class StringUtils {
             return String.format("%dс", seconds);
         }
     }
-}
+
+    // Для строковых значений JSON, собираемых вручную
+    public static String escapeJson(String text) {
+        return text.replace("\\", "\\\\")
+                .replace("\"", "\\\"")
+                .replace("\n", "\\n")
+                .replace("\r", "\\r")
+                .replace("\t", "\\t");
+    }
+
+    // Числа из строки по порядку (не больше limit); цветовые коды § и ANSI пропускаются
+    public static double[] parseNumbers(CharSequence text, int limit) {
+        double[] numbers = new double[limit];
+        int found = 0;
+        int length = text == null ? 0 : text.length();
+        int i = 0;
+        while (i < length && found < limit) {
+            char c = text.charAt(i);
+            if (c == '\u001B') {
+                while (i < length && text.charAt(i) != 'm') {
+                    i++;
+                }
+                i++;
+                continue;
+            }
+            if (c == '§') {
+                i += 2;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < length && (c = text.charAt(i)) >= '0' && c <= '9') {
+                i++;
+            }
+            if (i + 1 < length && (text.charAt(i) == '.' || text.charAt(i) == ',')
+                    && text.charAt(i + 1) >= '0' && text.charAt(i + 1) <= '9') {
+                i++;
+                while (i < length && (c = text.charAt(i)) >= '0' && c <= '9') {
+                    i++;
+                }
+            }
+            double value = Double.parseDouble(text.subSequence(start, i).toString().replace(',', '.'));
+            numbers[found++] = value;
+        }
+        return found == limit ? numbers : Arrays.copyOf(numbers, found);
+    }
+
+    public static String formatNumber(double value) {
+        if (Double.isNaN(value)) {
+            return "N/A";
+        }
+        // 19.50 -> 19.5, 20.00 -> 20
+        String formatted = String.format(Locale.ROOT, "%.2f", value);
+        int end = formatted.length();
+        while (formatted.charAt(end - 1) == '0') {
+            end--;
+        }
+        if (formatted.charAt(end - 1) == '.') {
+            end--;
+        }
+        return formatted.substring(0, end);
+    }
+}
\ No newline at end of file
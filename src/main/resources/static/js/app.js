@@ -7,6 +7,10 @@ document.addEventListener('DOMContentLoaded', function() {
     const createBackupBtn = document.getElementById('createBackupBtn');
     const restoreBackupBtn = document.getElementById('restoreBackupBtn');
     const deleteBackupBtn = document.getElementById('deleteBackupBtn');
+    const rollbackRestoreBtn = document.getElementById('rollbackRestoreBtn');
+    const browseBackupBtn = document.getElementById('browseBackupBtn');
+    const backupBrowserUpBtn = document.getElementById('backupBrowserUpBtn');
+    const restoreEntriesBtn = document.getElementById('restoreEntriesBtn');
     const backupList = document.getElementById('backupList');
     const saveBackupSettingsBtn = document.getElementById('saveBackupSettingsBtn');
     const browseBackupDirBtn = document.getElementById('browseBackupDirBtn');
@@ -125,33 +129,148 @@ document.addEventListener('DOMContentLoaded', function() {
             .catch(error => console.log('Error loading Security settings:', error));
     }
 
+    const MAX_CONSOLE_NODES = 500;
     let isServerRunning = false;
+    // Берутся из ответа на подписку истории (server.console.replayLimit и replayPageSize)
+    let maxReplayLines = 0;
+    let replayPageSize = 0;
+    let lastConsoleSeq = 0;
+    let replayingConsole = false;
+    let pendingLiveLines = [];
     let stompClient = null;
     let selectedBackup = null;
+    let liveStats = {};
 
     function connect() {
         const socket = new SockJS('/ws');
         stompClient = Stomp.over(socket);
         stompClient.connect({}, function(frame) {
             console.log('Connected: ' + frame);
-            // Загружаем историю логов при подключении
-            fetch('/api/server/logs')
-                .then(response => response.json())
-                .then(logs => {
-                    consoleElement.innerHTML = '';
-                    logs.forEach(log => appendToConsole(log));
-                });
+            // Пока идёт догрузка истории, живые кадры копятся в pendingLiveLines
+            replayingConsole = true;
+            pendingLiveLines = [];
 
             stompClient.subscribe('/topic/console', function(message) {
                 if (message.body === "clear") {
                     consoleElement.innerHTML = '';
+                    pendingLiveLines = [];
+                } else if (replayingConsole) {
+                    pendingLiveLines.push(...JSON.parse(message.body));
                 } else {
-                    appendToConsole(message.body);
+                    appendLiveLines(JSON.parse(message.body));
                 }
             });
+
+            // Сначала полный снимок статистики, дальше только изменившиеся поля
+            stompClient.subscribe('/app/stats', function(message) {
+                liveStats = JSON.parse(message.body);
+                renderStats();
+            });
+            stompClient.subscribe('/topic/stats', function(message) {
+                Object.assign(liveStats, JSON.parse(message.body));
+                renderStats();
+            });
+
+            // История приходит только этой сессии в ответ на подписку
+            stompClient.subscribe('/app/console/history', function(message) {
+                const page = JSON.parse(message.body);
+                maxReplayLines = page.replayLimit;
+                replayPageSize = page.pageSize;
+                if (lastConsoleSeq === 0) consoleElement.innerHTML = '';
+                appendBatchToConsole(page.lines);
+                (page.hasMore ? fetchMissedLogs(page.headSeq) : Promise.resolve())
+                    .finally(finishConsoleReplay);
+            }, { since: String(lastConsoleSeq) });
+        }, function(error) {
+            console.log('Disconnected: ' + error);
+            setTimeout(connect, 5000);
         });
     }
 
+    function fetchMissedLogs(untilSeq) {
+        if (untilSeq - lastConsoleSeq > maxReplayLines) {
+            lastConsoleSeq = untilSeq - maxReplayLines;
+        }
+        if (lastConsoleSeq >= untilSeq) return Promise.resolve();
+
+        return fetch('/api/server/logs?since=' + lastConsoleSeq + '&limit=' + replayPageSize)
+            .then(response => response.json())
+            .then(logs => {
+                if (!logs.length) return;
+                appendBatchToConsole(logs);
+                return fetchMissedLogs(untilSeq);
+            });
+    }
+
+    function finishConsoleReplay() {
+        replayingConsole = false;
+        const lines = pendingLiveLines;
+        pendingLiveLines = [];
+        appendLiveLines(lines);
+    }
+
+    function appendLiveLines(lines) {
+        const markerIndex = lines.findIndex(line => line.skipped);
+        if (markerIndex >= 0) {
+            // Сервер пропустил строки, пока соединение не успевало - не догружаем их, а показываем отметку
+            appendBatchToConsole(lines.slice(0, markerIndex));
+            appendConsoleText('... пропущено строк: ' + lines[markerIndex].skipped + ' ...\n', 'console-warn');
+            const rest = lines.slice(markerIndex + 1);
+            if (rest.length) lastConsoleSeq = Math.max(lastConsoleSeq, rest[0].seq - 1);
+            appendLiveLines(rest);
+            return;
+        }
+        if (!lines.length) return;
+        if (lastConsoleSeq > 0 && lines[0].seq > lastConsoleSeq + 1) {
+            // Пропуск в нумерации - догружаем недостающие строки через REST
+            replayingConsole = true;
+            pendingLiveLines = lines;
+            fetchMissedLogs(lines[0].seq - 1).finally(finishConsoleReplay);
+            return;
+        }
+        appendBatchToConsole(lines);
+    }
+
+    function renderStats() {
+        if (typeof liveStats.running === 'boolean' && liveStats.running !== isServerRunning) {
+            isServerRunning = liveStats.running;
+            updateUI();
+        }
+        document.getElementById('statStatus').textContent = liveStats.running ? 'Running' : 'Stopped';
+        document.getElementById('statPlayers').textContent = formatStat(liveStats.onlinePlayers);
+        document.getElementById('statTps').textContent = formatStat(liveStats.tps);
+        document.getElementById('statMemory').textContent = liveStats.memory || 'N/A';
+        document.getElementById('statCpu').textContent = formatStat(liveStats.cpuPercent, '%');
+        document.getElementById('statThreads').textContent = formatStat(liveStats.threads);
+        renderUptime();
+    }
+
+    function formatStat(value, suffix) {
+        return value === null || value === undefined ? 'N/A' : value + (suffix || '');
+    }
+
+    // Время работы считается в браузере от startTime, чтобы сервер не рассылал его каждую секунду
+    function renderUptime() {
+        const element = document.getElementById('statUptime');
+        if (!liveStats.running || !liveStats.startTime) {
+            element.textContent = 'N/A';
+            return;
+        }
+        let seconds = Math.max(0, Math.floor((Date.now() - liveStats.startTime) / 1000));
+        const days = Math.floor(seconds / 86400);
+        seconds %= 86400;
+        const hours = Math.floor(seconds / 3600);
+        seconds %= 3600;
+        const minutes = Math.floor(seconds / 60);
+        seconds %= 60;
+        if (days > 0) element.textContent = `${days}д ${hours}ч ${minutes}м ${seconds}с`;
+        else if (hours > 0) element.textContent = `${hours}ч ${minutes}м ${seconds}с`;
+        else if (minutes > 0) element.textContent = `${minutes}м ${seconds}с`;
+        else element.textContent = `${seconds}с`;
+    }
+
+    setInterval(renderUptime, 1000);
+
     function checkServerStatus() {
         fetch('/api/server/status')
             .then(response => {
@@ -173,9 +292,49 @@ document.addEventListener('DOMContentLoaded', function() {
         if (text === "clear") {
             consoleElement.innerHTML = '';
         } else {
-            consoleElement.innerHTML += text + '\n';
-            consoleElement.scrollTop = consoleElement.scrollHeight;
+            appendConsoleText(text + '\n');
+        }
+    }
+
+    // Каждый кадр с сервера - массив строк {seq, level, text, ...}; подряд идущие строки одного уровня рисуем одной нодой
+    function appendBatchToConsole(lines) {
+        lines = lines.filter(line => line.seq > lastConsoleSeq);
+        if (!lines.length) return;
+        lastConsoleSeq = lines[lines.length - 1].seq;
+
+        let runClass = null;
+        let runText = '';
+        for (const line of lines) {
+            const lineClass = consoleLevelClass(line.level);
+            if (lineClass !== runClass && runText) {
+                appendConsoleText(runText, runClass);
+                runText = '';
+            }
+            runClass = lineClass;
+            runText += line.text + '\n';
+        }
+        appendConsoleText(runText, runClass);
+    }
+
+    function consoleLevelClass(level) {
+        if (level === 'WARN') return 'console-warn';
+        if (level === 'ERROR' || level === 'FATAL') return 'console-error';
+        return null;
+    }
+
+    function appendConsoleText(text, className) {
+        let node = document.createTextNode(text);
+        if (className) {
+            const span = document.createElement('span');
+            span.className = className;
+            span.appendChild(node);
+            node = span;
         }
+        consoleElement.appendChild(node);
+        while (consoleElement.childNodes.length > MAX_CONSOLE_NODES) {
+            consoleElement.removeChild(consoleElement.firstChild);
+        }
+        consoleElement.scrollTop = consoleElement.scrollHeight;
     }
 
     function updateUI() {
@@ -412,6 +571,75 @@ document.addEventListener('DOMContentLoaded', function() {
 
         document.getElementById('restoreBackupBtn').disabled = false;
         document.getElementById('deleteBackupBtn').disabled = false;
+        document.getElementById('browseBackupBtn').disabled = false;
+        document.getElementById('backupBrowser').style.display = 'none';
+    }
+
+    // Просмотр содержимого бэкапа по папкам; отмеченные файлы и папки восстанавливаются отдельно от остального
+    let browsedBackup = null;
+    let browsePath = '';
+    const checkedEntries = new Set();
+
+    function loadBackupEntries(path) {
+        fetch('/api/server/backup/entries?backupName=' + encodeURIComponent(browsedBackup.name) +
+            '&type=' + encodeURIComponent(browsedBackup.type) + '&prefix=' + encodeURIComponent(path))
+            .then(response => {
+                if (!response.ok) throw new Error('Error loading backup contents');
+                return response.json();
+            })
+            .then(entries => {
+                browsePath = path;
+                document.getElementById('backupBrowserPath').textContent =
+                    browsedBackup.name + ' / ' + path;
+                const list = document.getElementById('backupBrowserList');
+                list.innerHTML = '';
+                entries.forEach(entry => {
+                    const li = document.createElement('li');
+                    li.className = 'list-group-item d-flex align-items-center';
+
+                    const checkbox = document.createElement('input');
+                    checkbox.type = 'checkbox';
+                    checkbox.className = 'form-check-input me-2';
+                    checkbox.checked = checkedEntries.has(entry.path);
+                    checkbox.addEventListener('change', function() {
+                        if (this.checked) {
+                            checkedEntries.add(entry.path);
+                        } else {
+                            checkedEntries.delete(entry.path);
+                        }
+                        restoreEntriesBtn.disabled = checkedEntries.size === 0;
+                    });
+
+                    const label = document.createElement('span');
+                    label.className = 'flex-grow-1';
+                    label.textContent = entry.directory ? entry.name + '/' : entry.name;
+                    if (entry.directory) {
+                        label.style.cursor = 'pointer';
+                        label.addEventListener('click', () => loadBackupEntries(entry.path));
+                    }
+
+                    const details = document.createElement('small');
+                    details.className = 'text-muted';
+                    details.textContent = formatBytes(entry.size) +
+                        (entry.directory ? ', ' + entry.files + ' files' : '');
+
+                    li.appendChild(checkbox);
+                    li.appendChild(label);
+                    li.appendChild(details);
+                    list.appendChild(li);
+                });
+                if (entries.length === 0) {
+                    list.innerHTML = '<li class="list-group-item">Empty</li>';
+                }
+            })
+            .catch(error => appendToConsole(error.message));
+    }
+
+    function formatBytes(bytes) {
+        if (bytes >= 1024 * 1024 * 1024) return (bytes / (1024 * 1024 * 1024)).toFixed(1) + ' GB';
+        if (bytes >= 1024 * 1024) return (bytes / (1024 * 1024)).toFixed(1) + ' MB';
+        if (bytes >= 1024) return (bytes / 1024).toFixed(1) + ' KB';
+        return bytes + ' B';
     }
 
     startStopBtn.addEventListener('click', function() {
@@ -460,7 +688,7 @@ document.addEventListener('DOMContentLoaded', function() {
     });
 
     statsBtn.addEventListener('click', function() {
-        fetch('/api/server/stats')
+        fetch('/api/server/stats?refresh=true')
             .then(response => response.json())
             .then(stats => {
                 let statsText = `Server Stats:
@@ -557,6 +785,58 @@ document.addEventListener('DOMContentLoaded', function() {
         }
     });
 
+    browseBackupBtn.addEventListener('click', function() {
+        if (!selectedBackup) return;
+
+        browsedBackup = selectedBackup;
+        checkedEntries.clear();
+        restoreEntriesBtn.disabled = true;
+        document.getElementById('backupBrowser').style.display = 'block';
+        loadBackupEntries('');
+    });
+
+    backupBrowserUpBtn.addEventListener('click', function() {
+        if (!browsedBackup || browsePath === '') return;
+
+        const parts = browsePath.split('/').filter(part => part.length > 0);
+        parts.pop();
+        loadBackupEntries(parts.length > 0 ? parts.join('/') + '/' : '');
+    });
+
+    restoreEntriesBtn.addEventListener('click', function() {
+        if (!browsedBackup || checkedEntries.size === 0) return;
+
+        const paths = Array.from(checkedEntries);
+        if (confirm(`Restore ${paths.length} selected entries from ${browsedBackup.name}? Only these files will be overwritten.\n\n` + paths.join('\n'))) {
+            fetch('/api/server/backup/restore-entries?backupName=' + encodeURIComponent(browsedBackup.name) +
+                '&type=' + encodeURIComponent(browsedBackup.type), {
+                method: 'POST',
+                headers: { 'Content-Type': 'application/json' },
+                body: JSON.stringify(paths)
+            })
+                .then(response => {
+                    if (!response.ok) throw new Error('Error restoring backup entries');
+                    return response.text();
+                })
+                .then(message => appendToConsole(message))
+                .catch(error => appendToConsole(error.message));
+        }
+    });
+
+    rollbackRestoreBtn.addEventListener('click', function() {
+        if (confirm('Are you sure you want to undo the last restore? Server files will be returned to the state before it.')) {
+            fetch('/api/server/backup/rollback', {
+                method: 'POST'
+            })
+                .then(response => {
+                    if (!response.ok) throw new Error('Error rolling back restore');
+                    return response.text();
+                })
+                .then(message => appendToConsole(message))
+                .catch(error => appendToConsole(error.message));
+        }
+    });
+
     deleteBackupBtn.addEventListener('click', function() {
         if (!selectedBackup) return;
 
@@ -575,6 +855,8 @@ document.addEventListener('DOMContentLoaded', function() {
                     selectedBackup = null;
                     document.getElementById('restoreBackupBtn').disabled = true;
                     document.getElementById('deleteBackupBtn').disabled = true;
+                    document.getElementById('browseBackupBtn').disabled = true;
+                    document.getElementById('backupBrowser').style.display = 'none';
                 })
                 .catch(error => appendToConsole(error.message));
         }
@@ -0,0 +1,106 @@
+package org.ejectfb.minecraftserverwebhandler.backup;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncrementalBackupTest {
+    @TempDir
+    Path temp;
+
+    @Test
+    void storesRegionFileChunkByChunk() throws IOException {
+        Path world = temp.resolve("world");
+        Path file = world.resolve("region/r.0.0.mca");
+        writeRegion(file, 100, 200);
+
+        BackupManifest manifest = backup(world, file);
+
+        assertEquals(1, manifest.files().size());
+        BackupManifest.FileEntry entry = manifest.files().get(0);
+        assertNotNull(entry.region());
+        assertEquals(2, entry.region().slots().length);
+        assertRestored(manifest, file);
+    }
+
+    @Test
+    void storesRegionFileWithCorruptedChunkAsPlainFile() throws IOException {
+        Path world = temp.resolve("world");
+        Path file = world.resolve("region/r.0.0.mca");
+        // Длина второго чанка больше его единственного сектора
+        writeRegion(file, 100, RegionFile.SECTOR_SIZE * 3);
+
+        List<Path> errors = new ArrayList<>();
+        BackupManifest manifest = backup(world, file, errors);
+
+        assertTrue(errors.isEmpty());
+        assertEquals(1, manifest.files().size());
+        assertNull(manifest.files().get(0).region());
+        assertRestored(manifest, file);
+    }
+
+    @Test
+    void storesTruncatedRegionFileAsPlainFile() throws IOException {
+        Path world = temp.resolve("world");
+        Path file = world.resolve("region/r.0.0.mca");
+        writeRegion(file, 100, 200);
+        // Файл обрывается внутри второго чанка
+        byte[] data = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(data, RegionFile.HEADER_SIZE + RegionFile.SECTOR_SIZE + 50));
+
+        BackupManifest manifest = backup(world, file);
+
+        assertEquals(1, manifest.files().size());
+        assertNull(manifest.files().get(0).region());
+        assertRestored(manifest, file);
+    }
+
+    private BackupManifest backup(Path world, Path file) throws IOException {
+        return backup(world, file, new ArrayList<>());
+    }
+
+    private BackupManifest backup(Path world, Path file, List<Path> errors) throws IOException {
+        IncrementalBackup backup = new IncrementalBackup(new ChunkStore(temp.resolve("store")), 2,
+                (path, e) -> errors.add(path));
+        return backup.create(world, List.of(file), null).manifest();
+    }
+
+    private void assertRestored(BackupManifest manifest, Path original) throws IOException {
+        Path target = temp.resolve("restored");
+        new IncrementalBackup(new ChunkStore(temp.resolve("store")), 1, (path, e) -> {
+        }).restore(manifest, target);
+        assertArrayEquals(Files.readAllBytes(original), Files.readAllBytes(target.resolve("region/r.0.0.mca")));
+    }
+
+    // Два чанка по одному сектору в слотах 0 и 1; lengths - значения поля длины в заголовках чанков
+    private static void writeRegion(Path file, int... lengths) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(RegionFile.HEADER_SIZE + lengths.length * RegionFile.SECTOR_SIZE);
+        Random random = new Random(1);
+        for (int slot = 0; slot < lengths.length; slot++) {
+            int sector = 2 + slot;
+            data.putInt(slot * 4, sector << 8 | 1);
+            data.putInt(RegionFile.SECTOR_SIZE + slot * 4, 1_700_000_000 + slot);
+            int position = sector * RegionFile.SECTOR_SIZE;
+            data.putInt(position, lengths[slot]);
+            byte[] payload = new byte[Math.min(lengths[slot], RegionFile.SECTOR_SIZE - 4)];
+            random.nextBytes(payload);
+            data.put(position + 4, payload);
+        }
+        Files.createDirectories(file.getParent());
+        Files.write(file, data.array());
+    }
+}
@@ -0,0 +1,97 @@
+package org.ejectfb.minecraftserverwebhandler.backup;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ParallelZipWriterTest {
+    private static final int CHUNK_SIZE = ParallelZipWriter.CHUNK_SIZE;
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void writesArchiveReadableByZipFileAndZipInputStream() throws IOException {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("empty.txt", new byte[0]);
+        files.put("small.dat", data(1000, 1));
+        files.put("chunk.dat", data(CHUNK_SIZE, 2));
+        files.put("world/region/r.0.0.mca", data(2 * CHUNK_SIZE + 12345, 3));
+
+        // Каталог открывается, но чтение из него падает - запись должна пропасть из архива целиком
+        Path unreadable = temp.resolve("unreadable");
+        Files.createDirectories(unreadable);
+
+        Path archive = temp.resolve("backup.zip");
+        List<Path> errors = new ArrayList<>();
+        ParallelZipWriter.Result result;
+        try (ParallelZipWriter zip = new ParallelZipWriter(archive, 4, (path, e) -> errors.add(path))) {
+            int index = 0;
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                Path source = temp.resolve("source-" + index++);
+                Files.write(source, file.getValue());
+                zip.addFile(file.getKey(), source);
+                if (index == 2) {
+                    zip.addFile("unreadable", unreadable);
+                }
+            }
+            result = zip.finish();
+        }
+
+        assertEquals(List.of(unreadable), errors);
+        assertEquals(files.size(), result.entries());
+        assertEquals(files.values().stream().mapToLong(data -> data.length).sum(), result.uncompressedBytes());
+        assertEquals(Files.size(archive), result.compressedBytes());
+
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            assertEquals(files.size(), zip.size());
+            assertNull(zip.getEntry("unreadable"));
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                ZipEntry entry = zip.getEntry(file.getKey());
+                assertEquals(file.getValue().length, entry.getSize());
+                try (InputStream in = zip.getInputStream(entry)) {
+                    assertArrayEquals(file.getValue(), in.readAllBytes(), file.getKey());
+                }
+            }
+        }
+
+        // ZipInputStream верит размерам и CRC из локальных заголовков, которые у многокусковых файлов дописываются в конце
+        Map<String, byte[]> streamed = new LinkedHashMap<>();
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                streamed.put(entry.getName(), in.readAllBytes());
+            }
+        }
+        assertEquals(List.copyOf(files.keySet()), List.copyOf(streamed.keySet()));
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            assertArrayEquals(file.getValue(), streamed.get(file.getKey()), file.getKey());
+        }
+    }
+
+    // Наполовину случайные данные: есть что сжимать, а словарь предыдущего куска действительно используется
+    private static byte[] data(int size, long seed) {
+        byte[] data = new byte[size];
+        Random random = new Random(seed);
+        for (int i = 0; i < size; i++) {
+            data[i] = (i & 64) == 0 ? (byte) random.nextInt() : (byte) (i % 31);
+        }
+        return data;
+    }
+}